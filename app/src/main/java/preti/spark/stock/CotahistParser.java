@@ -0,0 +1,143 @@
+package preti.spark.stock;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Set;
+
+import preti.spark.stock.model.EpochDays;
+
+/**
+ * Positional parser of the quote records of the B3 historical files
+ * (COTAHIST). Fields are read straight from their fixed offsets: numbers are
+ * decoded digit by digit into longs, dates into epoch days and the texts are
+ * trimmed and interned, since the same few codes and names repeat over
+ * millions of lines.
+ */
+public class CotahistParser {
+	static final int RECORD_TYPE = 0, RECORD_TYPE_LENGTH = 2;
+	static final int DATE = 2, DATE_LENGTH = 8;
+	static final int CODE = 12, CODE_LENGTH = 12;
+	static final int TYPE = 24, TYPE_LENGTH = 3;
+	static final int NAME = 27, NAME_LENGTH = 12;
+	static final int OPEN = 56, HIGH = 69, LOW = 82, CLOSE = 108, PRICE_LENGTH = 13;
+	static final int VOLUME = 170, VOLUME_LENGTH = 18;
+	static final int MINIMUM_LENGTH = VOLUME + VOLUME_LENGTH;
+
+	private static final char[] QUOTE_RECORD_TYPE = { '0', '1' };
+
+	// Consecutive records usually share the same date
+	private static volatile DayInstant lastDay = new DayInstant(0, EpochDays.toMillis(0));
+
+	private CotahistParser() {
+	}
+
+	public static InputDataEntry parse(String line) throws ParseException {
+		if (line.length() < MINIMUM_LENGTH) {
+			throw new ParseException("Record too short: " + line, line.length());
+		}
+		parseLong(line, RECORD_TYPE, RECORD_TYPE_LENGTH);
+
+		int epochDay = parseEpochDay(line, DATE);
+		String code = parseText(line, CODE, CODE_LENGTH);
+		String type = parseText(line, TYPE, TYPE_LENGTH);
+		String name = parseText(line, NAME, NAME_LENGTH);
+		double open = parseLong(line, OPEN, PRICE_LENGTH) / 100d;
+		double high = parseLong(line, HIGH, PRICE_LENGTH) / 100d;
+		double low = parseLong(line, LOW, PRICE_LENGTH) / 100d;
+		double close = parseLong(line, CLOSE, PRICE_LENGTH) / 100d;
+		double volume = parseLong(line, VOLUME, VOLUME_LENGTH) / 100d;
+
+		return new InputDataEntry(epochDay, toDate(epochDay), code, type, name, open, high, low, close, volume);
+	}
+
+	/**
+	 * Tells whether the line is a quote record of one of the informed codes by
+	 * looking only at the record type and code fields, so header and trailer
+	 * records and the codes out of the universe are dropped before parsing.
+	 */
+	public static boolean isQuoteOf(String line, Set<String> codes) {
+		if (line.length() < MINIMUM_LENGTH || line.charAt(RECORD_TYPE) != QUOTE_RECORD_TYPE[0]
+				|| line.charAt(RECORD_TYPE + 1) != QUOTE_RECORD_TYPE[1]) {
+			return false;
+		}
+		int start = CODE, end = CODE + CODE_LENGTH;
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return codes.contains(line.substring(start, end));
+	}
+
+	/**
+	 * Reads a yyyyMMdd date as an epoch day. Out of range months and days roll
+	 * over to the next ones, as in a lenient {@link java.text.SimpleDateFormat}.
+	 */
+	static int parseEpochDay(String line, int offset) throws ParseException {
+		int year = (int) parseLong(line, offset, 4);
+		int month = (int) parseLong(line, offset + 4, 2);
+		int day = (int) parseLong(line, offset + 6, 2);
+
+		year += Math.floorDiv(month - 1, 12);
+		month = Math.floorMod(month - 1, 12) + 1;
+		return daysFromCivil(year, month) + day - 1;
+	}
+
+	/**
+	 * Epoch day of the first day of the month in the proleptic Gregorian
+	 * calendar.
+	 */
+	private static int daysFromCivil(int year, int month) {
+		// Counts years from March, so the leap day is the last day of the year
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	static long parseLong(String line, int offset, int length) throws ParseException {
+		long value = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int digit = line.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new ParseException("Invalid digit in record: " + line, i);
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	static String parseText(String line, int offset, int length) {
+		int start = offset, end = offset + length;
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return line.substring(start, end).intern();
+	}
+
+	private static Date toDate(int epochDay) {
+		DayInstant day = lastDay;
+		if (day.epochDay != epochDay) {
+			day = new DayInstant(epochDay, EpochDays.toMillis(epochDay));
+			lastDay = day;
+		}
+		return new Date(day.millis);
+	}
+
+	private static class DayInstant {
+		private final int epochDay;
+		private final long millis;
+
+		DayInstant(int epochDay, long millis) {
+			this.epochDay = epochDay;
+			this.millis = millis;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package preti.spark.stock;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.WalkForward;
+
+/**
+ * Feeds new daily bars to a running {@link TradeSystem}: each bar is appended
+ * to its stock history, which extends the Donchian channels by one value, and
+ * the system advances one trading day at a time over the stocks with a bar on
+ * it. The cost of a day depends on the number of its bars, not on the length
+ * of the histories.
+ * <p>
+ * Given the {@link WalkForward} the system comes from, the first day past the
+ * end of the current test window optimizes the strategies of the window that
+ * holds it over its training months, as the walk-forward analysis would, before
+ * the day is applied. Without it the strategies are kept as they are. The
+ * outcome is the one of the analysis over the same bars, except when a window
+ * ends on a trading day: the day is applied once, with the strategies of the
+ * window it ends, while the analysis evaluates it again as the first day of the
+ * next window.
+ */
+@SuppressWarnings("serial")
+public class DailyBarUpdater implements Serializable {
+	private static final Log log = LogFactory.getLog(DailyBarUpdater.class);
+
+	private TradeSystem system;
+	private Map<String, Stock> stocks = new HashMap<>();
+	// only used on the driver, where the updates are applied
+	private transient WalkForward walkForward;
+	private Date initialDate;
+	private DateInterval testWindow;
+
+	public DailyBarUpdater(TradeSystem system) {
+		super();
+		this.system = system;
+		for (Stock s : system.getStocks()) {
+			stocks.put(s.getCode(), s);
+		}
+	}
+
+	/**
+	 * Creates an updater that moves the system along the test windows of the
+	 * walk-forward analysis started at the initial date. The system must have
+	 * been analyzed up to a date in a test window, with its strategies.
+	 */
+	public DailyBarUpdater(TradeSystem system, WalkForward walkForward, Date initialDate) {
+		this(system);
+		Date lastDate = system.getLastAnalyzedDate();
+		if (lastDate == null) {
+			throw new IllegalArgumentException("The system has not been analyzed yet.");
+		}
+		this.walkForward = walkForward;
+		this.initialDate = initialDate;
+		this.testWindow = walkForward.testWindowAt(initialDate, lastDate);
+		if (testWindow == null) {
+			throw new IllegalArgumentException("The system was analyzed only up to a training window.");
+		}
+	}
+
+	public DateInterval getTestWindow() {
+		return testWindow;
+	}
+
+	public TradeSystem getSystem() {
+		return system;
+	}
+
+	/**
+	 * Applies the entries, in chronological order. Entries of stocks out of the
+	 * system and days not after the last analyzed one, like the ones of a file
+	 * delivered twice, are skipped.
+	 */
+	public void update(Collection<InputDataEntry> entries) {
+		Map<Integer, List<InputDataEntry>> entriesByDay = new TreeMap<>();
+		for (InputDataEntry e : entries) {
+			if (stocks.containsKey(e.getCode())) {
+				entriesByDay.computeIfAbsent(e.getEpochDay(), day -> new ArrayList<>()).add(e);
+			}
+		}
+
+		for (Map.Entry<Integer, List<InputDataEntry>> day : entriesByDay.entrySet()) {
+			Date date = EpochDays.toDate(day.getKey());
+			Date lastDate = system.getLastAnalyzedDate();
+			if (lastDate != null && !date.after(lastDate)) {
+				log.warn(String.format("Skipping %s bars of %s, already analyzed up to %s", day.getValue().size(),
+						date, lastDate));
+				continue;
+			}
+			advance(date, day.getValue());
+		}
+	}
+
+	private void advance(Date date, List<InputDataEntry> entries) {
+		long start = System.nanoTime();
+		List<String> codes = new ArrayList<>();
+		for (InputDataEntry e : entries) {
+			PriceSeries series = stocks.get(e.getCode()).getSeries();
+			if (!series.isEmpty() && e.getEpochDay() <= series.getLastDate()) {
+				log.warn("Skipping repeated bar of " + e.getCode() + " at " + date);
+				continue;
+			}
+			series.add(e.getEpochDay(), e.getHigh(), e.getLow(), e.getClose(), e.getVolume());
+			codes.add(e.getCode());
+		}
+		if (walkForward != null && date.after(testWindow.getFinalDate())) {
+			// the training months end before the day, so its bars don't change
+			// the optimization
+			testWindow = walkForward.testWindowAt(initialDate, date);
+			walkForward.applyWindowStrategies(system, testWindow);
+		}
+		system.advance(date, codes);
+		Metrics.addTimeSince("advance", start);
+		log.info(String.format("Advanced to %s with %s bar(s): balance=%s equity=%s", date, codes.size(),
+				system.getAccountBalance(), system.getEquity()));
+	}
+
+}
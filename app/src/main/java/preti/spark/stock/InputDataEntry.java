@@ -13,9 +13,12 @@ import java.util.regex.Pattern;
 
 import com.esotericsoftware.minlog.Log;
 
+import preti.spark.stock.model.EpochDays;
+
 @SuppressWarnings("serial")
 public class InputDataEntry implements Serializable {
 
+	private int epochDay;
 	private Date date;
 	private String code;
 	private String type;
@@ -28,7 +31,13 @@ public class InputDataEntry implements Serializable {
 
 	public InputDataEntry(Date date, String code, String type, String name, double open, double high, double low,
 			double close, double volume) {
+		this(EpochDays.fromDate(date), date, code, type, name, open, high, low, close, volume);
+	}
+
+	InputDataEntry(int epochDay, Date date, String code, String type, String name, double open, double high,
+			double low, double close, double volume) {
 		super();
+		this.epochDay = epochDay;
 		this.date = date;
 		this.code = code;
 		this.type = type;
@@ -44,6 +53,10 @@ public class InputDataEntry implements Serializable {
 		return date;
 	}
 
+	public int getEpochDay() {
+		return epochDay;
+	}
+
 	public String getCode() {
 		return code;
 	}
@@ -85,7 +98,15 @@ public class InputDataEntry implements Serializable {
 	private static String DATE_PATTERN = "yyyyMMdd";
 	private static Pattern pattern = Pattern.compile(INPUT_PATTERN);
 	
-	public static InputDataEntry parseFromLine(String line) throws ParseException{
+	public static InputDataEntry parseFromLine(String line) throws ParseException {
+		return CotahistParser.parse(line);
+	}
+
+	/**
+	 * Former regex based parser, replaced by {@link CotahistParser}. Kept as a
+	 * reference for benchmarks.
+	 */
+	public static InputDataEntry parseFromLineWithRegex(String line) throws ParseException{
 		Matcher m = pattern.matcher(line);
 		m.find();
 		Date date = new SimpleDateFormat(DATE_PATTERN).parse(m.group("strdate"));
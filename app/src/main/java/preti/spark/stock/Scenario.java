@@ -0,0 +1,330 @@
+package preti.spark.stock;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import preti.spark.stock.reporting.SocketReportSink;
+import preti.spark.stock.system.ParameterGrid;
+
+/**
+ * A walk-forward backtest to run over the loaded stocks. A job specification
+ * is a properties file listing the scenarios to run, each one configured by
+ * keys prefixed with its name, falling back to the unprefixed keys and then to
+ * the defaults:
+ * 
+ * <pre>
+ * scenarios=base,longer
+ * initialDate=2014-01-01
+ * finalDate=2015-01-01
+ * trainingMonths=1
+ * testMonths=1
+ * accountInitialPosition=10000
+ * grid=10,20,2,10
+ * stocks=PETR4,VALE5
+ * reports.enabled=true
+ * reports.host=localhost
+ * reports.balance.port=5003
+ * reports.stock.port=5001
+ * reports.operations.port=5002
+ * reports.aggregated.port=5000
+ * reports.threads=4
+ * reports.executorSide=false
+ * reports.flushSize=1000
+ * reports.queueCapacity=10000
+ * reports.sink=elasticsearch
+ * reports.es.nodes=localhost
+ * reports.es.port=9200
+ * reports.es.batch.size.entries=1000
+ * checkpoint=/var/lib/stocks/base.ckpt
+ * checkpoint.verify=false
+ * longer.trainingMonths=3
+ * </pre>
+ * 
+ * Without "stocks", a scenario runs over all the loaded stocks. Report index
+ * names are prefixed with "reports.indexPrefix", by default the scenario name
+ * followed by an underscore. Reports go to sockets unless "reports.sink" is
+ * "elasticsearch", in which case they are indexed directly with the
+ * elasticsearch-spark settings given by the "reports.es." keys, the stock and
+ * aggregated reports being built on the executors unless
+ * "reports.executorSide" is false. With "checkpoint", the system is stored in
+ * that local file at the end of the run, before the open trades are closed,
+ * and the next runs resume it, going only through the test windows after the
+ * last final date. "checkpoint.verify" also runs those from the start,
+ * failing if the balances differ.
+ */
+public class Scenario {
+	private static final String DATE_FORMAT = "yyyy-MM-dd";
+	private static final String ES_PREFIX = "reports.es.";
+
+	private String name;
+	private Date initialDate;
+	private Date finalDate;
+	private int trainingMonths;
+	private int testMonths;
+	private double accountInitialPosition;
+	private ParameterGrid grid;
+	private List<String> stockCodes;
+	private boolean reportsEnabled;
+	private String reportsHost;
+	private int balanceReportPort, stockReportPort, operationsReportPort, aggregatedReportPort;
+	private String reportsIndexPrefix;
+	private int reportsThreads;
+	private boolean executorSideReports;
+	private int reportsFlushSize;
+	private int reportsQueueCapacity;
+	private boolean elasticsearchSink;
+	private Map<String, String> elasticsearchConfig;
+	private String checkpointFile;
+	private boolean checkpointVerify;
+
+	private Scenario(String name, Properties properties, String defaultIndexPrefix) {
+		super();
+		this.name = name;
+		this.initialDate = parseDate(get(properties, "initialDate", "2014-01-01"));
+		this.finalDate = parseDate(get(properties, "finalDate", "2015-01-01"));
+		this.trainingMonths = Integer.parseInt(get(properties, "trainingMonths", "1"));
+		this.testMonths = Integer.parseInt(get(properties, "testMonths", "1"));
+		this.accountInitialPosition = Double.parseDouble(get(properties, "accountInitialPosition", "10000"));
+		this.grid = parseGrid(get(properties, "grid", null));
+		String stocks = get(properties, "stocks", null);
+		this.stockCodes = stocks == null ? null : splitList(stocks);
+		this.reportsEnabled = Boolean.parseBoolean(get(properties, "reports.enabled", "true"));
+		this.reportsHost = get(properties, "reports.host", "localhost");
+		this.balanceReportPort = Integer.parseInt(get(properties, "reports.balance.port", "5003"));
+		this.stockReportPort = Integer.parseInt(get(properties, "reports.stock.port", "5001"));
+		this.operationsReportPort = Integer.parseInt(get(properties, "reports.operations.port", "5002"));
+		this.aggregatedReportPort = Integer.parseInt(get(properties, "reports.aggregated.port", "5000"));
+		this.reportsIndexPrefix = get(properties, "reports.indexPrefix", defaultIndexPrefix);
+		this.reportsThreads = Integer.parseInt(get(properties, "reports.threads", "4"));
+		this.reportsFlushSize = Integer.parseInt(
+				get(properties, "reports.flushSize", String.valueOf(SocketReportSink.DEFAULT_FLUSH_SIZE)));
+		this.reportsQueueCapacity = Integer.parseInt(
+				get(properties, "reports.queueCapacity", String.valueOf(SocketReportSink.DEFAULT_QUEUE_CAPACITY)));
+		String sink = get(properties, "reports.sink", "socket");
+		if (!sink.equals("socket") && !sink.equals("elasticsearch")) {
+			throw new IllegalArgumentException("Invalid report sink " + sink + ", expected socket or elasticsearch");
+		}
+		this.elasticsearchSink = sink.equals("elasticsearch");
+		this.executorSideReports = Boolean
+				.parseBoolean(get(properties, "reports.executorSide", String.valueOf(elasticsearchSink)));
+		this.elasticsearchConfig = new HashMap<>();
+		elasticsearchConfig.put("es.nodes", "localhost");
+		elasticsearchConfig.put("es.port", "9200");
+		elasticsearchConfig.put("es.batch.size.entries", "1000");
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(ES_PREFIX)) {
+				elasticsearchConfig.put("es." + key.substring(ES_PREFIX.length()), properties.getProperty(key).trim());
+			}
+		}
+		this.checkpointFile = get(properties, "checkpoint", null);
+		this.checkpointVerify = Boolean.parseBoolean(get(properties, "checkpoint.verify", "false"));
+
+		if (!initialDate.before(finalDate)) {
+			throw new IllegalArgumentException("Scenario " + name + " must start before it ends.");
+		}
+	}
+
+	/**
+	 * The scenario used when no job specification is informed.
+	 */
+	public static Scenario defaultScenario() {
+		return new Scenario("default", new Properties(), "");
+	}
+
+	public static List<Scenario> parse(String specification) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new StringReader(specification));
+		return load(properties);
+	}
+
+	public static List<Scenario> load(Properties properties) {
+		String names = properties.getProperty("scenarios");
+		if (names == null) {
+			return Collections.singletonList(new Scenario("default", properties, ""));
+		}
+
+		List<Scenario> scenarios = new ArrayList<>();
+		for (String name : splitList(names)) {
+			Properties scenarioProperties = new Properties();
+			for (String key : properties.stringPropertyNames()) {
+				if (!key.startsWith(name + ".")) {
+					scenarioProperties.setProperty(key, properties.getProperty(key));
+				}
+			}
+			for (String key : properties.stringPropertyNames()) {
+				if (key.startsWith(name + ".")) {
+					scenarioProperties.setProperty(key.substring(name.length() + 1), properties.getProperty(key));
+				}
+			}
+			scenarios.add(new Scenario(name, scenarioProperties, name + "_"));
+		}
+		if (scenarios.isEmpty()) {
+			throw new IllegalArgumentException("No scenarios were specified.");
+		}
+		return scenarios;
+	}
+
+	private static String get(Properties properties, String key, String defaultValue) {
+		String value = properties.getProperty(key);
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+	}
+
+	private static Date parseDate(String s) {
+		try {
+			return new SimpleDateFormat(DATE_FORMAT).parse(s);
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("Invalid date " + s + ", expected " + DATE_FORMAT);
+		}
+	}
+
+	private static ParameterGrid parseGrid(String s) {
+		if (s == null) {
+			return ParameterGrid.DEFAULT;
+		}
+		List<String> bounds = splitList(s);
+		if (bounds.size() != 4) {
+			throw new IllegalArgumentException(
+					"Invalid grid " + s + ", expected minEntry,maxEntry,minExit,maxExit");
+		}
+		return new ParameterGrid(Integer.parseInt(bounds.get(0)), Integer.parseInt(bounds.get(1)),
+				Integer.parseInt(bounds.get(2)), Integer.parseInt(bounds.get(3)));
+	}
+
+	private static List<String> splitList(String s) {
+		List<String> values = new ArrayList<>();
+		for (String value : Arrays.asList(s.split(","))) {
+			if (!value.trim().isEmpty()) {
+				values.add(value.trim());
+			}
+		}
+		return values;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Date getInitialDate() {
+		return initialDate;
+	}
+
+	public Date getFinalDate() {
+		return finalDate;
+	}
+
+	public int getTrainingMonths() {
+		return trainingMonths;
+	}
+
+	public int getTestMonths() {
+		return testMonths;
+	}
+
+	public double getAccountInitialPosition() {
+		return accountInitialPosition;
+	}
+
+	public ParameterGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Returns the codes of the stocks of this scenario, or null if it runs over
+	 * all the loaded stocks.
+	 */
+	public List<String> getStockCodes() {
+		return stockCodes;
+	}
+
+	public boolean isReportsEnabled() {
+		return reportsEnabled;
+	}
+
+	public String getReportsHost() {
+		return reportsHost;
+	}
+
+	public int getBalanceReportPort() {
+		return balanceReportPort;
+	}
+
+	public int getStockReportPort() {
+		return stockReportPort;
+	}
+
+	public int getOperationsReportPort() {
+		return operationsReportPort;
+	}
+
+	public int getAggregatedReportPort() {
+		return aggregatedReportPort;
+	}
+
+	public int getReportsThreads() {
+		return reportsThreads;
+	}
+
+	/**
+	 * Tells whether the per bar reports (stock and aggregated) are built on the
+	 * executors.
+	 */
+	public boolean isExecutorSideReports() {
+		return executorSideReports;
+	}
+
+	public int getReportsFlushSize() {
+		return reportsFlushSize;
+	}
+
+	public int getReportsQueueCapacity() {
+		return reportsQueueCapacity;
+	}
+
+	public boolean isElasticsearchSink() {
+		return elasticsearchSink;
+	}
+
+	/**
+	 * Returns the elasticsearch-spark settings of the Elasticsearch sink.
+	 */
+	public Map<String, String> getElasticsearchConfig() {
+		return elasticsearchConfig;
+	}
+
+	/**
+	 * Returns the local file the system is checkpointed to, or null if it
+	 * isn't.
+	 */
+	public String getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	/**
+	 * Tells whether a resumed run is checked against a run from the start.
+	 */
+	public boolean isCheckpointVerify() {
+		return checkpointVerify;
+	}
+
+	public String getReportsIndexName(String reportName) {
+		return reportsIndexPrefix + reportName;
+	}
+
+	public String toString() {
+		return String.format("%s: %s to %s, training=%s month(s), test=%s month(s), capital=%s, grid %s, stocks=%s",
+				name, new SimpleDateFormat(DATE_FORMAT).format(initialDate),
+				new SimpleDateFormat(DATE_FORMAT).format(finalDate), trainingMonths, testMonths,
+				accountInitialPosition, grid, stockCodes == null ? "all" : stockCodes);
+	}
+
+}
@@ -0,0 +1,314 @@
+package preti.spark.stock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.storage.StorageLevel;
+
+import preti.spark.stock.metrics.MetricValues;
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockHistory;
+import preti.spark.stock.reporting.AggregatedReport;
+import preti.spark.stock.reporting.BalanceReport;
+import preti.spark.stock.reporting.DistributedAggregatedReport;
+import preti.spark.stock.reporting.DistributedStockReport;
+import preti.spark.stock.reporting.EsReportSinkFactory;
+import preti.spark.stock.reporting.OperationsReport;
+import preti.spark.stock.reporting.ReportPipeline;
+import preti.spark.stock.reporting.ReportSinkFactory;
+import preti.spark.stock.reporting.SocketReportSink;
+import preti.spark.stock.reporting.StockReport;
+import preti.spark.stock.reporting.TradeReport;
+import preti.spark.stock.system.DistributedParameterOptimizer;
+import preti.spark.stock.system.OptimizationObjective;
+import preti.spark.stock.system.ParameterOptimizer;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.TradeSystemCheckpoint;
+import preti.spark.stock.system.WalkForward;
+import scala.Tuple2;
+
+public class StockAnalysis {
+	private static final Log log = LogFactory.getLog(StockAnalysis.class);
+
+	private static final String CACHE_DIR_PROPERTY = "spark.stock.cacheDir";
+	private static final String METRICS_FILE_PROPERTY = "spark.stock.metricsFile";
+
+	/**
+	 * Usage: StockAnalysis &lt;data file&gt; &lt;stock filter file&gt; [job
+	 * specification file]. The scenarios of the job specification (see
+	 * {@link Scenario}) run one after the other over the same loaded stocks.
+	 * The metrics of the run are logged at the end and, when
+	 * "spark.stock.metricsFile" is set, written to that local file, as CSV if
+	 * its name ends with ".csv" and as JSON otherwise.
+	 */
+	public static void main(String[] args) throws IOException {
+		// defaults, so spark-submit --conf can still pick other ones
+		SparkConf conf = new SparkConf().setIfMissing("spark.serializer", KryoSerializer.class.getName())
+				.setIfMissing("spark.kryo.registrator", StockKryoRegistrator.class.getName());
+		JavaSparkContext sc = new JavaSparkContext(conf);
+		MetricValues metrics = new MetricValues();
+		Metrics.bind(metrics);
+
+		// Load the text file into Spark.
+		if (args.length < 2) {
+			System.out.println("Must specify input files");
+			System.exit(-1);
+		}
+		String dataFile = args[0];
+		String stockFilterFile = args[1];
+
+		List<Scenario> scenarios = args.length > 2
+				? Scenario.parse(String.join("\n", sc.textFile(args[2]).collect()))
+				: Collections.singletonList(Scenario.defaultScenario());
+
+		List<String> stockCodes = readStockCodes(sc, stockFilterFile, scenarios);
+
+		boolean distributedReports = false;
+		for (Scenario scenario : scenarios) {
+			distributedReports |= scenario.isReportsEnabled() && scenario.isExecutorSideReports();
+		}
+		long start = System.nanoTime();
+		LoadedStocks loadedStocks = loadStocks(sc, conf, dataFile, stockCodes, distributedReports);
+		Metrics.addTimeSince("load", start);
+
+		// printStocks(loadedStocks.collected);
+		for (Scenario scenario : scenarios) {
+			runScenario(sc, scenario, loadedStocks);
+		}
+
+		log.info("Metrics: " + metrics);
+		String metricsFile = conf.get(METRICS_FILE_PROPERTY, null);
+		if (metricsFile != null) {
+			metrics.write(new File(metricsFile));
+		}
+	}
+
+	/**
+	 * Returns the codes of the filter file followed by the other codes of the
+	 * scenarios.
+	 */
+	static List<String> readStockCodes(JavaSparkContext sc, String stockFilterFile, List<Scenario> scenarios) {
+		List<String> stockCodes = new ArrayList<>(
+				sc.textFile(stockFilterFile).filter(s -> !s.trim().isEmpty()).collect());
+		// List<String> stockCodes = inputData.map(sd ->
+		// sd.getCode()).distinct().collect();
+		for (Scenario scenario : scenarios) {
+			if (scenario.getStockCodes() != null) {
+				for (String code : scenario.getStockCodes()) {
+					if (!stockCodes.contains(code)) {
+						stockCodes.add(code);
+					}
+				}
+			}
+		}
+		return stockCodes;
+	}
+
+	static List<Stock> getScenarioStocks(Scenario scenario, List<Stock> stocks) {
+		if (scenario.getStockCodes() == null) {
+			return stocks;
+		}
+		List<Stock> scenarioStocks = new ArrayList<>();
+		for (Stock s : stocks) {
+			if (scenario.getStockCodes().contains(s.getCode())) {
+				scenarioStocks.add(s);
+			}
+		}
+		return scenarioStocks;
+	}
+
+	static WalkForward createWalkForward(JavaSparkContext sc, Scenario scenario) {
+		ParameterOptimizer parameterOptimizer = new ParameterOptimizer(scenario.getGrid(),
+				OptimizationObjective.NET_GAIN, scenario.getAccountInitialPosition());
+		return new WalkForward(new DistributedParameterOptimizer(sc, parameterOptimizer),
+				scenario.getTrainingMonths(), scenario.getTestMonths());
+	}
+
+	private static void runScenario(JavaSparkContext sc, Scenario scenario, LoadedStocks loadedStocks)
+			throws IOException {
+		log.info("Running scenario " + scenario);
+		List<Stock> scenarioStocks = getScenarioStocks(scenario, loadedStocks.collected);
+		TradeSystem system = runWalkForward(sc, scenario, scenarioStocks);
+		System.out.println("Final balance of scenario " + scenario.getName() + ": " + system.getAccountBalance());
+
+		if (!scenario.isReportsEnabled()) {
+			return;
+		}
+		String host = scenario.getReportsHost();
+		log.info("Generating reports ...");
+		ReportSinkFactory sinkFactory = scenario.isElasticsearchSink()
+				? new EsReportSinkFactory(scenario.getElasticsearchConfig())
+				: new SocketReportSink.Factory(scenario.getReportsFlushSize(), scenario.getReportsQueueCapacity());
+		ReportPipeline reports = new ReportPipeline(sinkFactory, scenario.getReportsThreads());
+		reports.add(new BalanceReport(system, host, scenario.getBalanceReportPort(),
+				scenario.getReportsIndexName("balance")));
+		reports.add(new OperationsReport(system, host, scenario.getOperationsReportPort(),
+				scenario.getReportsIndexName("operations")));
+		// reports.add(new TradeReport(system, host, 5000,
+		// scenario.getReportsIndexName("trade")));
+		if (scenario.isExecutorSideReports()) {
+			reports.add(new DistributedStockReport(system, loadedStocks.distributed, host,
+					scenario.getStockReportPort(), scenario.getReportsIndexName("stock")));
+			reports.add(new DistributedAggregatedReport(sc, system, loadedStocks.distributed, host,
+					scenario.getAggregatedReportPort(), scenario.getReportsIndexName("aggregated")));
+		} else {
+			reports.add(
+					new StockReport(system, host, scenario.getStockReportPort(), scenario.getReportsIndexName("stock")));
+			reports.add(new AggregatedReport(system, host, scenario.getAggregatedReportPort(),
+					scenario.getReportsIndexName("aggregated")));
+		}
+		reports.run();
+		log.info("Reports generated");
+	}
+
+	/**
+	 * Runs the walk-forward analysis of the scenario, resuming it from its
+	 * checkpoint, if any, which is then replaced by the system at the final
+	 * date, before its open trades are closed.
+	 */
+	private static TradeSystem runWalkForward(JavaSparkContext sc, Scenario scenario, List<Stock> stocks)
+			throws IOException {
+		WalkForward walkForward = createWalkForward(sc, scenario);
+		Date initialDate = scenario.getInitialDate();
+		Date finalDate = scenario.getFinalDate();
+		if (scenario.getCheckpointFile() == null) {
+			return walkForward.run(stocks, initialDate, finalDate);
+		}
+
+		File file = new File(scenario.getCheckpointFile());
+		String key = checkpointKey(scenario, stocks);
+		TradeSystemCheckpoint checkpoint = TradeSystemCheckpoint.read(file, key, stocks);
+		if (checkpoint != null && checkpoint.getDate().after(finalDate)) {
+			log.warn(String.format("Ignoring checkpoint %s, taken after the final date %s", file, finalDate));
+			checkpoint = null;
+		}
+		TradeSystem system;
+		if (checkpoint == null) {
+			system = walkForward.run(stocks, initialDate, finalDate, false);
+		} else {
+			system = walkForward.resume(checkpoint, initialDate, finalDate, false);
+			if (scenario.isCheckpointVerify()) {
+				verifyResumed(system, walkForward.run(stocks, initialDate, finalDate, false));
+			}
+		}
+		new TradeSystemCheckpoint(system, finalDate, key).write(file);
+		system.closeAllOpenTrades(finalDate);
+		return system;
+	}
+
+	/**
+	 * Identifies the walk-forward of the scenario regardless of its final date,
+	 * which is what a checkpoint can be resumed by.
+	 */
+	private static String checkpointKey(Scenario scenario, List<Stock> stocks) {
+		List<String> codes = new ArrayList<>();
+		for (Stock s : stocks) {
+			codes.add(s.getCode());
+		}
+		return String.format("initialDate=%s trainingMonths=%s testMonths=%s capital=%s grid=%s stocks=%s",
+				new SimpleDateFormat("yyyy-MM-dd").format(scenario.getInitialDate()), scenario.getTrainingMonths(),
+				scenario.getTestMonths(), scenario.getAccountInitialPosition(), scenario.getGrid(), codes);
+	}
+
+	private static void verifyResumed(TradeSystem resumed, TradeSystem full) {
+		if (!resumed.getBalanceHistory().equals(full.getBalanceHistory())
+				|| !resumed.getEquityHistory().equals(full.getEquityHistory())
+				|| resumed.getAccountBalance() != full.getAccountBalance()) {
+			throw new IllegalStateException(String.format(
+					"The resumed run ended with balance %s over %s days, but the full run with %s over %s days",
+					resumed.getAccountBalance(), resumed.getBalanceHistory().size(), full.getAccountBalance(),
+					full.getBalanceHistory().size()));
+		}
+		log.info("The resumed run has the same balances of the full run");
+	}
+
+	/**
+	 * The loaded stocks, collected on the driver and, when the reports are
+	 * built on the executors, also kept distributed.
+	 */
+	static class LoadedStocks {
+		List<Stock> collected;
+		JavaPairRDD<String, Stock> distributed;
+	}
+
+	/**
+	 * Loads the stocks from the local cache when "spark.stock.cacheDir" is set
+	 * and already holds the histories of this input, otherwise parses the
+	 * input, storing the result in the cache for the next runs.
+	 */
+	static LoadedStocks loadStocks(JavaSparkContext sc, SparkConf conf, String dataFile,
+			List<String> stockCodes, boolean distributed) throws IOException {
+		LoadedStocks loadedStocks = new LoadedStocks();
+		String cacheDir = conf.get(CACHE_DIR_PROPERTY, null);
+		StockHistoryCache cache = null;
+		if (cacheDir != null) {
+			cache = StockHistoryCache.forSource(new File(cacheDir), dataFile, stockCodes, sc.hadoopConfiguration());
+			loadedStocks.collected = cache.load(stockCodes);
+			if (loadedStocks.collected != null) {
+				if (distributed) {
+					List<Tuple2<String, Stock>> pairs = new ArrayList<>();
+					for (Stock s : loadedStocks.collected) {
+						pairs.add(new Tuple2<>(s.getCode(), s));
+					}
+					loadedStocks.distributed = sc.parallelizePairs(pairs).persist(StorageLevel.MEMORY_ONLY_SER());
+				}
+				return loadedStocks;
+			}
+		}
+
+		StockLoader loader = new StockLoader(sc, stockCodes);
+		JavaRDD<InputDataEntry> inputData = loader.readInput(dataFile);
+		inputData.persist(StorageLevel.MEMORY_ONLY_SER());
+		// parsed into the cache on its own, so parsing and grouping are timed
+		// apart
+		long start = System.nanoTime();
+		Metrics.add(Counter.INPUT_ENTRIES, inputData.count());
+		Metrics.addTimeSince("parse", start);
+
+		start = System.nanoTime();
+		JavaPairRDD<String, Stock> stocks = loader.loadStocks(inputData);
+		if (distributed) {
+			// kept for the reports, which will not need to parse the input again
+			loadedStocks.distributed = stocks.persist(StorageLevel.MEMORY_ONLY_SER());
+		}
+		loadedStocks.collected = loader.collectStocks(stocks);
+		Metrics.addTimeSince("group", start);
+
+		if (cache != null) {
+			cache.store(loadedStocks.collected, stockCodes);
+		}
+		return loadedStocks;
+	}
+
+	private static void printStocks(List<Stock> stocks) throws IOException {
+		System.out.println("Stocks: " + stocks);
+		String outputFile = "/tmp/output.txt";
+		PrintWriter writer = new PrintWriter(new FileWriter(outputFile));
+		for (Stock stock : stocks) {
+			writer.println(stock.getCode());
+			for (Date d : stock.getHistory().keySet()) {
+				StockHistory h = stock.getHistory(d);
+				writer.println("####" + h);
+			}
+		}
+		writer.flush();
+		writer.close();
+	}
+
+}
@@ -0,0 +1,263 @@
+package preti.spark.stock;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Local on-disk cache of parsed stock histories, so later runs over the same
+ * input skip reading and parsing the text files. Each source gets a directory
+ * named after its checksum, holding a directory per set of stock codes, so
+ * runs over different universes don't replace each other's caches. Those have
+ * one binary file per stock holding the columns of its {@link PriceSeries},
+ * which are memory-mapped back when loading, and a manifest with the codes the
+ * directory covers.
+ * <p>
+ * The checksum covers the path, length and modification time of every input
+ * file, plus the file checksum when the file system provides one (HDFS) or
+ * else the first and last blocks of the file (local files), so a change to the
+ * input lands in a new directory without reading the whole input on every run.
+ */
+public class StockHistoryCache {
+	private static final Log log = LogFactory.getLog(StockHistoryCache.class);
+
+	// "PSC1": price series cache, version 1
+	private static final int MAGIC = 0x50534331;
+	private static final String MANIFEST = "codes.txt";
+	private static final String EXTENSION = ".bin";
+	// bytes hashed from each end of the input files without a checksum
+	private static final int SAMPLE_SIZE = 64 * 1024;
+
+	private File directory;
+
+	public StockHistoryCache(File baseDirectory, String sourceChecksum, Collection<String> codes) {
+		super();
+		this.directory = new File(new File(baseDirectory, sourceChecksum), codesChecksum(codes));
+	}
+
+	public static StockHistoryCache forSource(File baseDirectory, String dataFile, Collection<String> codes,
+			Configuration conf) throws IOException {
+		return new StockHistoryCache(baseDirectory, checksum(dataFile, conf), codes);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public static String checksum(String dataFile, Configuration conf) throws IOException {
+		Path path = new Path(dataFile);
+		FileSystem fs = path.getFileSystem(conf);
+		FileStatus[] matches = fs.globStatus(path);
+		if (matches == null || matches.length == 0) {
+			throw new IOException("No input found at " + dataFile);
+		}
+
+		List<FileStatus> files = new ArrayList<>();
+		for (FileStatus status : matches) {
+			if (status.isDirectory()) {
+				files.addAll(Arrays.asList(fs.listStatus(status.getPath())));
+			} else {
+				files.add(status);
+			}
+		}
+		files.sort(Comparator.comparing(f -> f.getPath().toString()));
+
+		MessageDigest digest = newDigest();
+		for (FileStatus file : files) {
+			digest.update(String.format("%s|%s|%s\n", file.getPath(), file.getLen(), file.getModificationTime())
+					.getBytes(StandardCharsets.UTF_8));
+			if (!file.isDirectory()) {
+				FileChecksum fileChecksum = fs.getFileChecksum(file.getPath());
+				if (fileChecksum != null) {
+					digest.update(fileChecksum.getBytes());
+				} else {
+					digestSample(digest, fs, file);
+				}
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Hashes the first and last blocks of a file whose file system keeps no
+	 * checksum, like the local one, where a file replaced by another can keep
+	 * the length and modification time. Only those blocks are read, so the
+	 * check stays cheap on gigabytes of input; an edit in the middle of a file
+	 * that keeps its length and modification time goes unnoticed.
+	 */
+	private static void digestSample(MessageDigest digest, FileSystem fs, FileStatus file) throws IOException {
+		long length = file.getLen();
+		byte[] buffer = new byte[(int) Math.min(length, SAMPLE_SIZE)];
+		try (FSDataInputStream in = fs.open(file.getPath())) {
+			in.readFully(0, buffer, 0, buffer.length);
+			digest.update(buffer);
+			if (length > SAMPLE_SIZE) {
+				in.readFully(length - buffer.length, buffer, 0, buffer.length);
+				digest.update(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Identifies the set of codes, regardless of their order and repetitions.
+	 */
+	static String codesChecksum(Collection<String> codes) {
+		MessageDigest digest = newDigest();
+		for (String code : new TreeSet<>(codes)) {
+			digest.update((code + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Loads the stocks of the informed codes, in the same order, or returns
+	 * null if the cache doesn't cover all of them.
+	 */
+	public List<Stock> load(Collection<String> codes) throws IOException {
+		File manifest = new File(directory, MANIFEST);
+		if (!manifest.isFile()) {
+			return null;
+		}
+		Set<String> cachedCodes = new HashSet<>(Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8));
+		if (!cachedCodes.containsAll(codes)) {
+			return null;
+		}
+
+		List<Stock> stocks = new ArrayList<>();
+		for (String code : new LinkedHashSet<>(codes)) {
+			File file = new File(directory, code + EXTENSION);
+			if (file.isFile()) {
+				stocks.add(new Stock(code, readSeries(file)));
+			}
+		}
+		log.info(String.format("Loaded %s stocks from cache %s", stocks.size(), directory));
+		return stocks;
+	}
+
+	/**
+	 * Stores the stocks, recording that the cache covers the informed codes,
+	 * including those without any history.
+	 */
+	public void store(Collection<Stock> stocks, Collection<String> codes) throws IOException {
+		File temporary = new File(directory.getParentFile(), directory.getName() + ".tmp" + System.nanoTime());
+		if (!temporary.mkdirs()) {
+			throw new IOException("Could not create cache directory " + temporary);
+		}
+
+		for (Stock stock : stocks) {
+			writeSeries(new File(temporary, stock.getCode() + EXTENSION), stock.getSeries());
+		}
+		Set<String> coveredCodes = new LinkedHashSet<>(codes);
+		for (Stock stock : stocks) {
+			coveredCodes.add(stock.getCode());
+		}
+		Files.write(new File(temporary, MANIFEST).toPath(), coveredCodes, StandardCharsets.UTF_8);
+
+		if (directory.exists()) {
+			deleteDirectory(directory);
+		}
+		if (!temporary.renameTo(directory)) {
+			deleteDirectory(temporary);
+			throw new IOException("Could not move cache to " + directory);
+		}
+		log.info(String.format("Stored %s stocks in cache %s", stocks.size(), directory));
+	}
+
+	private static void writeSeries(File file, PriceSeries series) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(series.size());
+			for (int d : series.getDates()) {
+				out.writeInt(d);
+			}
+			for (double[] column : Arrays.asList(series.getHighs(), series.getLows(), series.getCloses(),
+					series.getVolumes())) {
+				for (double v : column) {
+					out.writeDouble(v);
+				}
+			}
+		}
+	}
+
+	private static PriceSeries readSeries(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Invalid cache file " + file);
+			}
+			int size = buffer.getInt();
+			if (channel.size() != 8 + size * (4L + 4 * 8)) {
+				throw new IOException("Truncated cache file " + file);
+			}
+
+			int[] dates = new int[size];
+			buffer.asIntBuffer().get(dates);
+			buffer.position(buffer.position() + size * 4);
+			double[][] columns = new double[4][size];
+			for (double[] column : columns) {
+				ByteBuffer slice = buffer.slice();
+				slice.asDoubleBuffer().get(column);
+				buffer.position(buffer.position() + size * 8);
+			}
+			return new PriceSeries(dates, columns[0], columns[1], columns[2], columns[3]);
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void deleteDirectory(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+}
@@ -0,0 +1,174 @@
+package preti.spark.stock;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeMap;
+
+import org.apache.spark.serializer.KryoRegistrator;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockHistory;
+import preti.spark.stock.model.StockTrade;
+import preti.spark.stock.model.Trade;
+import preti.spark.stock.reporting.AggregatedReport;
+import preti.spark.stock.system.OptimizationObjective;
+import preti.spark.stock.system.OptimizationResult;
+import preti.spark.stock.system.ParameterGrid;
+import preti.spark.stock.system.ParameterOptimizer;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.TradingStrategyImpl;
+
+/**
+ * Registers the model and system classes with Kryo. Price histories and input
+ * entries, which make up most of the shuffled, broadcast and cached data, get
+ * compact serializers writing their primitive values directly, with the dates
+ * of a series delta-encoded as variable-length integers.
+ */
+public class StockKryoRegistrator implements KryoRegistrator {
+
+	@Override
+	public void registerClasses(Kryo kryo) {
+		kryo.register(PriceSeries.class, new PriceSeriesSerializer());
+		kryo.register(Stock.class, new StockSerializer());
+		kryo.register(StockHistory.class, new StockHistorySerializer());
+		kryo.register(InputDataEntry.class, new InputDataEntrySerializer());
+
+		kryo.register(StockTrade.class);
+		kryo.register(Trade.class);
+		kryo.register(DateInterval.class);
+		kryo.register(TradeSystem.class);
+		kryo.register(TradingStrategyImpl.class);
+		kryo.register(ParameterOptimizer.class);
+		kryo.register(ParameterGrid.class);
+		kryo.register(OptimizationResult.class);
+		kryo.register(OptimizationObjective.Standard.class);
+		kryo.register(AggregatedReport.TradeSummary.class);
+
+		kryo.register(Date.class);
+		kryo.register(int[].class);
+		kryo.register(double[].class);
+		kryo.register(ArrayList.class);
+		kryo.register(HashMap.class);
+		kryo.register(HashSet.class);
+		kryo.register(TreeMap.class);
+	}
+
+	static class PriceSeriesSerializer extends Serializer<PriceSeries> {
+
+		@Override
+		public void write(Kryo kryo, Output output, PriceSeries series) {
+			int size = series.size();
+			output.writeInt(size, true);
+			int previousDate = 0;
+			for (int i = 0; i < size; i++) {
+				int date = series.getDate(i);
+				// the first date is written as it is, the next ones as
+				// the (positive) distance to the previous one
+				output.writeInt(date - previousDate, i > 0);
+				previousDate = date;
+			}
+			for (int i = 0; i < size; i++) {
+				output.writeDouble(series.getHigh(i));
+			}
+			for (int i = 0; i < size; i++) {
+				output.writeDouble(series.getLow(i));
+			}
+			for (int i = 0; i < size; i++) {
+				output.writeDouble(series.getClose(i));
+			}
+			for (int i = 0; i < size; i++) {
+				output.writeDouble(series.getVolume(i));
+			}
+		}
+
+		@Override
+		public PriceSeries read(Kryo kryo, Input input, Class<PriceSeries> type) {
+			int size = input.readInt(true);
+			int[] dates = new int[size];
+			int previousDate = 0;
+			for (int i = 0; i < size; i++) {
+				previousDate += input.readInt(i > 0);
+				dates[i] = previousDate;
+			}
+			return new PriceSeries(dates, readDoubles(input, size), readDoubles(input, size),
+					readDoubles(input, size), readDoubles(input, size));
+		}
+
+		private static double[] readDoubles(Input input, int size) {
+			double[] values = new double[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = input.readDouble();
+			}
+			return values;
+		}
+	}
+
+	static class StockSerializer extends Serializer<Stock> {
+
+		@Override
+		public void write(Kryo kryo, Output output, Stock stock) {
+			output.writeString(stock.getCode());
+			kryo.writeObject(output, stock.getSeries());
+		}
+
+		@Override
+		public Stock read(Kryo kryo, Input input, Class<Stock> type) {
+			String code = input.readString();
+			return new Stock(code, kryo.readObject(input, PriceSeries.class));
+		}
+	}
+
+	static class StockHistorySerializer extends Serializer<StockHistory> {
+
+		@Override
+		public void write(Kryo kryo, Output output, StockHistory history) {
+			output.writeLong(history.getDate().getTime());
+			output.writeDouble(history.getHigh());
+			output.writeDouble(history.getLow());
+			output.writeDouble(history.getClose());
+			output.writeDouble(history.getVolume());
+		}
+
+		@Override
+		public StockHistory read(Kryo kryo, Input input, Class<StockHistory> type) {
+			return new StockHistory(new Date(input.readLong()), input.readDouble(), input.readDouble(),
+					input.readDouble(), input.readDouble());
+		}
+	}
+
+	static class InputDataEntrySerializer extends Serializer<InputDataEntry> {
+
+		@Override
+		public void write(Kryo kryo, Output output, InputDataEntry entry) {
+			output.writeInt(entry.getEpochDay(), true);
+			output.writeLong(entry.getDate().getTime());
+			output.writeString(entry.getCode());
+			output.writeString(entry.getType());
+			output.writeString(entry.getName());
+			output.writeDouble(entry.getOpen());
+			output.writeDouble(entry.getHigh());
+			output.writeDouble(entry.getLow());
+			output.writeDouble(entry.getClose());
+			output.writeDouble(entry.getVolume());
+		}
+
+		@Override
+		public InputDataEntry read(Kryo kryo, Input input, Class<InputDataEntry> type) {
+			int epochDay = input.readInt(true);
+			Date date = new Date(input.readLong());
+			return new InputDataEntry(epochDay, date, input.readString(), input.readString(), input.readString(),
+					input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble(),
+					input.readDouble());
+		}
+	}
+
+}
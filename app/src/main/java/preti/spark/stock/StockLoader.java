@@ -0,0 +1,113 @@
+package preti.spark.stock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockHistory;
+import scala.Tuple2;
+
+/**
+ * Builds the {@link Stock} histories of a set of codes out of the input data in
+ * a single pass: the selected codes are broadcast once, input lines of other
+ * codes are dropped before being parsed and the entries are grouped by code in
+ * one shuffle.
+ */
+public class StockLoader {
+	private static final Log log = LogFactory.getLog(StockLoader.class);
+
+	private static final String JOB_GROUP = "stock-loading";
+
+	private JavaSparkContext sc;
+	private Set<String> stockCodes;
+	private Broadcast<Set<String>> selectedCodes;
+
+	public StockLoader(JavaSparkContext sc, Collection<String> stockCodes) {
+		super();
+		this.sc = sc;
+		this.stockCodes = new LinkedHashSet<>(stockCodes);
+		this.selectedCodes = sc.broadcast(new HashSet<>(stockCodes));
+	}
+
+	/**
+	 * Reads and parses the quote records of the selected codes.
+	 */
+	public JavaRDD<InputDataEntry> readInput(String dataFile) {
+		Broadcast<Set<String>> selectedCodes = this.selectedCodes;
+		return sc.textFile(dataFile).filter(s -> CotahistParser.isQuoteOf(s, selectedCodes.value()))
+				.map(InputDataEntry::parseFromLine);
+	}
+
+	public JavaPairRDD<String, Stock> loadStocks(JavaRDD<InputDataEntry> inputData) {
+		Broadcast<Set<String>> selectedCodes = this.selectedCodes;
+		return inputData.filter(e -> selectedCodes.value().contains(e.getCode()))
+				.mapToPair(e -> new Tuple2<>(e.getCode(),
+						new StockHistory(e.getDate(), e.getHigh(), e.getLow(), e.getClose(), e.getVolume())))
+				.groupByKey().mapToPair(t -> new Tuple2<>(t._1(), createStock(t._1(), t._2())));
+	}
+
+	/**
+	 * Collects the stocks to the driver, in the same order of the selected
+	 * codes. Codes without any history are skipped.
+	 */
+	public List<Stock> collectStocks(JavaPairRDD<String, Stock> stocks) {
+		Map<String, Stock> loadedStocks;
+		sc.setJobGroup(JOB_GROUP, "Loading stock histories");
+		try {
+			loadedStocks = stocks.collectAsMap();
+		} finally {
+			sc.clearJobGroup();
+		}
+		log.info(String.format("Loaded %s stocks using %s Spark job(s)", loadedStocks.size(),
+				sc.statusTracker().getJobIdsForGroup(JOB_GROUP).length));
+
+		List<Stock> result = new ArrayList<>();
+		for (String code : stockCodes) {
+			Stock stock = loadedStocks.get(code);
+			if (stock != null) {
+				result.add(stock);
+			}
+		}
+		return result;
+	}
+
+	public List<Stock> loadAndCollectStocks(JavaRDD<InputDataEntry> inputData) {
+		return collectStocks(loadStocks(inputData));
+	}
+
+	/**
+	 * Builds the series of a stock out of its grouped bars, which come in no
+	 * particular order. They are sorted first, so the series is built by
+	 * appends instead of shifting its arrays at each bar inserted in the
+	 * middle.
+	 */
+	private static Stock createStock(String code, Iterable<StockHistory> history) {
+		List<StockHistory> bars = new ArrayList<>();
+		for (StockHistory h : history) {
+			bars.add(h);
+		}
+		bars.sort(Comparator.comparing(StockHistory::getDate));
+
+		Stock stock = new Stock(code, new PriceSeries(bars.size()));
+		for (StockHistory h : bars) {
+			stock.addHistory(h);
+		}
+		stock.getSeries().trimToSize();
+		return stock;
+	}
+
+}
@@ -0,0 +1,125 @@
+package preti.spark.stock;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.streaming.Durations;
+import org.apache.spark.streaming.api.java.JavaStreamingContext;
+
+import preti.spark.stock.metrics.MetricValues;
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.WalkForward;
+
+/**
+ * Streaming mode of {@link StockAnalysis}. The scenario is backtested over the
+ * loaded history up to its last bar, keeping the open positions, and then the
+ * daily COTAHIST files dropped in a watched directory are applied as they
+ * arrive, advancing the system one trading day at a time (see
+ * {@link DailyBarUpdater}). The strategies are optimized again each time the
+ * days enter a new test window of the walk-forward analysis.
+ */
+public class StreamingStockAnalysis {
+	private static final Log log = LogFactory.getLog(StreamingStockAnalysis.class);
+
+	private static final String BATCH_SECONDS_PROPERTY = "spark.stock.batchSeconds";
+	private static final long DEFAULT_BATCH_SECONDS = 60;
+
+	/**
+	 * Usage: StreamingStockAnalysis &lt;data file&gt; &lt;stock filter
+	 * file&gt; &lt;watched directory&gt; [job specification file]. Only the
+	 * first scenario of the job specification is run, and its final date is
+	 * ignored. New files are looked for every "spark.stock.batchSeconds"
+	 * seconds, 60 by default.
+	 */
+	public static void main(String[] args) throws IOException {
+		// defaults, so spark-submit --conf can still pick other ones
+		SparkConf conf = new SparkConf().setIfMissing("spark.serializer", KryoSerializer.class.getName())
+				.setIfMissing("spark.kryo.registrator", StockKryoRegistrator.class.getName());
+		JavaSparkContext sc = new JavaSparkContext(conf);
+
+		if (args.length < 3) {
+			System.out.println("Must specify input files and the watched directory");
+			System.exit(-1);
+		}
+		String dataFile = args[0];
+		String stockFilterFile = args[1];
+		String watchedDirectory = args[2];
+		Scenario scenario = args.length > 3 ? Scenario.parse(String.join("\n", sc.textFile(args[3]).collect())).get(0)
+				: Scenario.defaultScenario();
+		MetricValues metrics = new MetricValues();
+		Metrics.bind(metrics);
+
+		List<String> stockCodes = StockAnalysis.readStockCodes(sc, stockFilterFile,
+				Collections.singletonList(scenario));
+		List<Stock> stocks = StockAnalysis.getScenarioStocks(scenario,
+				StockAnalysis.loadStocks(sc, conf, dataFile, stockCodes, false).collected);
+		WalkForward walkForward = StockAnalysis.createWalkForward(sc, scenario);
+		TradeSystem system = backtestHistory(walkForward, scenario, stocks);
+		log.info("Metrics of the backtest: " + metrics);
+
+		DailyBarUpdater updater = new DailyBarUpdater(system, walkForward, scenario.getInitialDate());
+		Set<String> codes = new HashSet<>(stockCodes);
+		JavaStreamingContext ssc = new JavaStreamingContext(sc,
+				Durations.seconds(conf.getLong(BATCH_SECONDS_PROPERTY, DEFAULT_BATCH_SECONDS)));
+		ssc.textFileStream(watchedDirectory).filter(s -> CotahistParser.isQuoteOf(s, codes))
+				.map(InputDataEntry::parseFromLine).foreachRDD(rdd -> {
+					// a day has a bar per stock at most, so they are applied on
+					// the driver, where the system lives
+					MetricValues previous = Metrics.bind(metrics);
+					try {
+						updater.update(rdd.collect());
+					} finally {
+						Metrics.bind(previous);
+					}
+					return null;
+				});
+		ssc.start();
+		ssc.awaitTermination();
+	}
+
+	/**
+	 * Runs the walk-forward analysis of the scenario up to the last loaded bar.
+	 * The days after the last complete test window are traded with the
+	 * strategies of the window that holds them.
+	 */
+	private static TradeSystem backtestHistory(WalkForward walkForward, Scenario scenario, List<Stock> stocks) {
+		Date lastDate = null;
+		for (Stock s : stocks) {
+			Date date = s.getDateAt(s.getHistorySize() - 1);
+			if (lastDate == null || date.after(lastDate)) {
+				lastDate = date;
+			}
+		}
+		if (lastDate == null) {
+			throw new IllegalArgumentException("No history loaded for scenario " + scenario.getName());
+		}
+
+		TradeSystem system = walkForward.run(stocks, scenario.getInitialDate(), lastDate, false);
+		Date lastAnalyzedDate = system.getLastAnalyzedDate();
+		if (lastAnalyzedDate == null) {
+			throw new IllegalArgumentException("History too short for a test window of scenario " + scenario.getName());
+		}
+		// the window of the last bar, left out of the analysis while incomplete
+		DateInterval testWindow = walkForward.testWindowAt(scenario.getInitialDate(), lastDate);
+		if (testWindow.getFinalDate().after(lastDate)) {
+			walkForward.applyWindowStrategies(system, testWindow);
+			system.analyzeStocks(testWindow.getInitialDate(), lastDate);
+		}
+		System.out.println("Balance of scenario " + scenario.getName() + " at " + lastDate + ": "
+				+ system.getAccountBalance());
+		return system;
+	}
+
+}
@@ -0,0 +1,158 @@
+package preti.spark.stock.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import preti.spark.stock.metrics.Metrics.Counter;
+
+/**
+ * Counters, stage timings and per-executor optimizer throughput of a run. The
+ * counters are meant to be updated by a single thread; values of other threads
+ * are merged in, and those of the executors come back with the task results
+ * and are merged on the driver.
+ */
+@SuppressWarnings("serial")
+public class MetricValues implements Serializable {
+	private long[] counters = new long[Counter.values().length];
+	// invocations and total nanoseconds by stage
+	private Map<String, long[]> timers = new TreeMap<>();
+	// grid combinations evaluated and nanoseconds spent by executor id
+	private Map<String, long[]> executors = new TreeMap<>();
+
+	public void add(Counter counter, long amount) {
+		counters[counter.ordinal()] += amount;
+	}
+
+	public long getCount(Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	public synchronized void addTime(String stage, long nanos) {
+		add(timers, stage, 1, nanos);
+	}
+
+	public synchronized long getNanos(String stage) {
+		long[] timer = timers.get(stage);
+		return timer == null ? 0 : timer[1];
+	}
+
+	public synchronized void addExecutorWork(String executorId, long combinations, long nanos) {
+		add(executors, executorId, combinations, nanos);
+	}
+
+	public synchronized MetricValues merge(MetricValues other) {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] += other.counters[i];
+		}
+		for (Map.Entry<String, long[]> e : other.timers.entrySet()) {
+			add(timers, e.getKey(), e.getValue()[0], e.getValue()[1]);
+		}
+		for (Map.Entry<String, long[]> e : other.executors.entrySet()) {
+			add(executors, e.getKey(), e.getValue()[0], e.getValue()[1]);
+		}
+		return this;
+	}
+
+	private static void add(Map<String, long[]> values, String key, long count, long nanos) {
+		long[] value = values.get(key);
+		if (value == null) {
+			values.put(key, new long[] { count, nanos });
+		} else {
+			value[0] += count;
+			value[1] += nanos;
+		}
+	}
+
+	/**
+	 * Writes the metrics as CSV when the file name ends with ".csv", as JSON
+	 * otherwise.
+	 */
+	public void write(File file) throws IOException {
+		try (Writer out = new FileWriter(file)) {
+			if (file.getName().endsWith(".csv")) {
+				writeCsv(out);
+			} else {
+				writeJson(out);
+			}
+		}
+	}
+
+	public synchronized void writeJson(Writer out) throws IOException {
+		Map<String, Object> counterValues = new LinkedHashMap<>();
+		for (Counter c : Counter.values()) {
+			counterValues.put(c.name(), getCount(c));
+		}
+		Map<String, Object> timerValues = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> e : timers.entrySet()) {
+			Map<String, Object> timer = new LinkedHashMap<>();
+			timer.put("count", e.getValue()[0]);
+			timer.put("millis", millis(e.getValue()[1]));
+			timerValues.put(e.getKey(), timer);
+		}
+		Map<String, Object> executorValues = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> e : executors.entrySet()) {
+			Map<String, Object> executor = new LinkedHashMap<>();
+			executor.put("combinations", e.getValue()[0]);
+			executor.put("millis", millis(e.getValue()[1]));
+			executor.put("combinationsPerSecond", perSecond(e.getValue()[0], e.getValue()[1]));
+			executorValues.put(e.getKey(), executor);
+		}
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("counters", counterValues);
+		metrics.put("timers", timerValues);
+		metrics.put("executors", executorValues);
+		new ObjectMapper().writer().writeValue(out, metrics);
+	}
+
+	/**
+	 * Writes one line per counter, stage and executor, with the columns kind,
+	 * name, count, millis and perSecond.
+	 */
+	public synchronized void writeCsv(Writer out) {
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("kind,name,count,millis,perSecond");
+		for (Counter c : Counter.values()) {
+			writer.println(String.format("counter,%s,%s,,", c.name(), getCount(c)));
+		}
+		for (Map.Entry<String, long[]> e : timers.entrySet()) {
+			writer.println(String.format("timer,%s,%s,%s,", e.getKey(), e.getValue()[0], millis(e.getValue()[1])));
+		}
+		for (Map.Entry<String, long[]> e : executors.entrySet()) {
+			writer.println(String.format("executor,%s,%s,%s,%s", e.getKey(), e.getValue()[0],
+					millis(e.getValue()[1]), perSecond(e.getValue()[0], e.getValue()[1])));
+		}
+		writer.flush();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000d;
+	}
+
+	private static double perSecond(long count, long nanos) {
+		return nanos == 0 ? 0 : count * 1000000000d / nanos;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Counter c : Counter.values()) {
+			text.append(text.length() == 0 ? "" : " ").append(c.name()).append('=').append(getCount(c));
+		}
+		for (Map.Entry<String, long[]> e : timers.entrySet()) {
+			text.append(' ').append(e.getKey()).append('=').append(Math.round(millis(e.getValue()[1])))
+					.append("ms");
+		}
+		return text.toString();
+	}
+
+}
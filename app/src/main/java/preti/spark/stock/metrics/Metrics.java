@@ -0,0 +1,82 @@
+package preti.spark.stock.metrics;
+
+/**
+ * Records the metrics of the backtest pipeline into the {@link MetricValues}
+ * bound to the current thread. Nothing is recorded on threads without bound
+ * values, so instrumented code costs a thread-local lookup when metrics are
+ * off. Hot loops should count locally and add once per call.
+ */
+public final class Metrics {
+
+	/**
+	 * BARS_EVALUATED counts the bars a trade system walks through, once per
+	 * bar of each stock, and GRID_BAR_EVALUATIONS the bars the grid backtests
+	 * evaluate, once per bar of each grid combination.
+	 */
+	public enum Counter {
+		INPUT_ENTRIES, BARS_EVALUATED, GRID_BAR_EVALUATIONS, ENTRY_SIGNALS, EXIT_SIGNALS, TRADES_OPENED,
+		TRADES_CLOSED, STRATEGIES_BUILT, INDICATOR_CACHE_HITS, INDICATOR_CACHE_MISSES, GRID_COMBINATIONS,
+		REPORT_EVENTS;
+	}
+
+	private static final ThreadLocal<MetricValues> current = new ThreadLocal<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * Binds the values to the current thread, or unbinds them when null, and
+	 * returns the ones bound before, so they can be restored.
+	 */
+	public static MetricValues bind(MetricValues values) {
+		MetricValues previous = current.get();
+		if (values == null) {
+			current.remove();
+		} else {
+			current.set(values);
+		}
+		return previous;
+	}
+
+	public static MetricValues current() {
+		return current.get();
+	}
+
+	public static void increment(Counter counter) {
+		add(counter, 1);
+	}
+
+	public static void add(Counter counter, long amount) {
+		MetricValues values = current.get();
+		if (values != null) {
+			values.add(counter, amount);
+		}
+	}
+
+	public static void addTime(String stage, long nanos) {
+		MetricValues values = current.get();
+		if (values != null) {
+			values.addTime(stage, nanos);
+		}
+	}
+
+	/**
+	 * Adds the time elapsed since the informed {@link System#nanoTime()} to
+	 * the stage.
+	 */
+	public static void addTimeSince(String stage, long startNanos) {
+		addTime(stage, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Adds values recorded elsewhere, like the ones of the executors, to the
+	 * current thread's.
+	 */
+	public static void merge(MetricValues other) {
+		MetricValues values = current.get();
+		if (values != null && other != null) {
+			values.merge(other);
+		}
+	}
+
+}
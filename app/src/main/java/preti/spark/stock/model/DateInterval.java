@@ -0,0 +1,29 @@
+package preti.spark.stock.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+@SuppressWarnings("serial")
+public class DateInterval implements Serializable {
+	private Date initialDate;
+	private Date finalDate;
+
+	public DateInterval(Date initialDate, Date finalDate) {
+		super();
+		this.initialDate = initialDate;
+		this.finalDate = finalDate;
+	}
+
+	public Date getInitialDate() {
+		return initialDate;
+	}
+
+	public Date getFinalDate() {
+		return finalDate;
+	}
+
+	public String toString() {
+		return String.format("initialDate=%s finalDate=%s", initialDate, finalDate);
+	}
+
+}
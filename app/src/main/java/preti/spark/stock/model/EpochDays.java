@@ -0,0 +1,38 @@
+package preti.spark.stock.model;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Conversions between {@link Date} and the number of days since 1970-01-01 in
+ * the default time zone, which is how dates are kept in {@link PriceSeries}.
+ * Dates are mapped back to the start of their day, the same instant produced
+ * when parsing a yyyyMMdd date with {@link java.text.SimpleDateFormat}.
+ */
+public final class EpochDays {
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+	private static final ZoneId ZONE_ID = TIME_ZONE.toZoneId();
+
+	private EpochDays() {
+	}
+
+	public static int fromDate(Date d) {
+		return fromMillis(d.getTime());
+	}
+
+	public static int fromMillis(long millis) {
+		return (int) Math.floorDiv(millis + TIME_ZONE.getOffset(millis), MILLIS_PER_DAY);
+	}
+
+	public static long toMillis(int epochDay) {
+		return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE_ID).toInstant().toEpochMilli();
+	}
+
+	public static Date toDate(int epochDay) {
+		return new Date(toMillis(epochDay));
+	}
+
+}
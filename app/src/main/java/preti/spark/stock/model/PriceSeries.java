@@ -0,0 +1,278 @@
+package preti.spark.stock.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Append-only columnar storage of the daily bars of a stock. Dates are kept as
+ * sorted epoch days (see {@link EpochDays}) and prices in parallel primitive
+ * arrays, so bars are addressed by their index in the history. Date lookups go
+ * through a dense day-to-ordinal table, built on the first lookup after the
+ * series changes and extended in place by appends, and take constant time.
+ */
+@SuppressWarnings("serial")
+public class PriceSeries implements Serializable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int size;
+	private int modificationCount;
+	private int rewriteCount;
+	private int[] dates;
+	private double[] high, low, close, volume;
+
+	// countBeforeDay[d - dates[0]] is the number of bars strictly before day d,
+	// with room to grow at the end
+	private transient volatile int[] countBeforeDay;
+
+	public PriceSeries() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public PriceSeries(int capacity) {
+		capacity = Math.max(capacity, 1);
+		dates = new int[capacity];
+		high = new double[capacity];
+		low = new double[capacity];
+		close = new double[capacity];
+		volume = new double[capacity];
+	}
+
+	/**
+	 * Creates a series over the informed columns, which must have the same
+	 * length and strictly increasing dates. The arrays are used as they are,
+	 * without copying.
+	 */
+	public PriceSeries(int[] dates, double[] high, double[] low, double[] close, double[] volume) {
+		int size = dates.length;
+		if (high.length != size || low.length != size || close.length != size || volume.length != size) {
+			throw new IllegalArgumentException("Columns must have the same length.");
+		}
+		for (int i = 1; i < size; i++) {
+			if (dates[i] <= dates[i - 1]) {
+				throw new IllegalArgumentException("Dates must be strictly increasing.");
+			}
+		}
+		this.size = size;
+		this.dates = dates;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+		this.volume = volume;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Counts the changes made to the series, so derived data can tell when it
+	 * is stale.
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Counts the changes other than bars appended after the last one, which
+	 * leave the existing bars as they were. Data derived from the first bars
+	 * is still valid while this count doesn't change.
+	 */
+	public int getRewriteCount() {
+		return rewriteCount;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getDate(int index) {
+		return dates[checkIndex(index)];
+	}
+
+	public double getHigh(int index) {
+		return high[checkIndex(index)];
+	}
+
+	public double getLow(int index) {
+		return low[checkIndex(index)];
+	}
+
+	public double getClose(int index) {
+		return close[checkIndex(index)];
+	}
+
+	public double getVolume(int index) {
+		return volume[checkIndex(index)];
+	}
+
+	public int[] getDates() {
+		return Arrays.copyOf(dates, size);
+	}
+
+	public double[] getHighs() {
+		return Arrays.copyOf(high, size);
+	}
+
+	public double[] getLows() {
+		return Arrays.copyOf(low, size);
+	}
+
+	public double[] getCloses() {
+		return Arrays.copyOf(close, size);
+	}
+
+	public double[] getVolumes() {
+		return Arrays.copyOf(volume, size);
+	}
+
+	public int getFirstDate() {
+		return getDate(0);
+	}
+
+	public int getLastDate() {
+		return getDate(size - 1);
+	}
+
+	/**
+	 * Returns the index of the bar at the informed epoch day, or -1 if there is
+	 * no bar at that day.
+	 */
+	public int indexOf(int epochDay) {
+		int i = countBefore(epochDay);
+		return i < size && dates[i] == epochDay ? i : -1;
+	}
+
+	/**
+	 * Returns the index of the last bar at or before the informed epoch day, or
+	 * -1 if all bars are after it.
+	 */
+	public int floorIndex(int epochDay) {
+		return epochDay == Integer.MAX_VALUE ? size - 1 : countBefore(epochDay + 1) - 1;
+	}
+
+	/**
+	 * Returns the number of bars strictly before the informed epoch day.
+	 */
+	public int countBefore(int epochDay) {
+		if (size == 0 || epochDay <= dates[0]) {
+			return 0;
+		}
+		if (epochDay > dates[size - 1]) {
+			return size;
+		}
+		int[] index = countBeforeDay;
+		if (index == null) {
+			index = buildIndex();
+		}
+		return index[epochDay - dates[0]];
+	}
+
+	private int[] buildIndex() {
+		int first = dates[0];
+		int[] index = new int[dates[size - 1] - first + 1];
+		int bar = 0;
+		for (int d = 0; d < index.length; d++) {
+			while (dates[bar] < first + d) {
+				bar++;
+			}
+			index[d] = bar;
+		}
+		countBeforeDay = index;
+		return index;
+	}
+
+	/**
+	 * Adds a bar to the series. Bars are expected in chronological order, but
+	 * out of order bars are inserted at their position and a bar at an existing
+	 * date replaces the previous one.
+	 */
+	public void add(int epochDay, double high, double low, double close, double volume) {
+		modificationCount++;
+		int index;
+		if (size == 0 || epochDay > dates[size - 1]) {
+			extendIndex(epochDay);
+			index = size;
+		} else {
+			countBeforeDay = null;
+			rewriteCount++;
+			int i = Arrays.binarySearch(dates, 0, size, epochDay);
+			if (i >= 0) {
+				set(i, epochDay, high, low, close, volume);
+				return;
+			}
+			index = -i - 1;
+		}
+
+		ensureCapacity(size + 1);
+		if (index < size) {
+			shift(index);
+		}
+		set(index, epochDay, high, low, close, volume);
+		size++;
+	}
+
+	/**
+	 * Extends the date index, if already built, up to the day appended after
+	 * the last bar, growing it geometrically so appends take amortized
+	 * constant time.
+	 */
+	private void extendIndex(int epochDay) {
+		int[] index = countBeforeDay;
+		if (index == null || size == 0) {
+			countBeforeDay = null;
+			return;
+		}
+		int from = dates[size - 1] - dates[0] + 1;
+		int to = epochDay - dates[0];
+		if (to >= index.length) {
+			index = Arrays.copyOf(index, Math.max(to + 1, index.length + (index.length >> 1)));
+		}
+		Arrays.fill(index, from, to + 1, size);
+		countBeforeDay = index;
+	}
+
+	public void trimToSize() {
+		if (dates.length > size) {
+			resize(Math.max(size, 1));
+		}
+	}
+
+	private void set(int index, int epochDay, double high, double low, double close, double volume) {
+		this.dates[index] = epochDay;
+		this.high[index] = high;
+		this.low[index] = low;
+		this.close[index] = close;
+		this.volume[index] = volume;
+	}
+
+	private void shift(int index) {
+		int length = size - index;
+		System.arraycopy(dates, index, dates, index + 1, length);
+		System.arraycopy(high, index, high, index + 1, length);
+		System.arraycopy(low, index, low, index + 1, length);
+		System.arraycopy(close, index, close, index + 1, length);
+		System.arraycopy(volume, index, volume, index + 1, length);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > dates.length) {
+			resize(Math.max(capacity, dates.length + (dates.length >> 1)));
+		}
+	}
+
+	private void resize(int capacity) {
+		dates = Arrays.copyOf(dates, capacity);
+		high = Arrays.copyOf(high, capacity);
+		low = Arrays.copyOf(low, capacity);
+		close = Arrays.copyOf(close, capacity);
+		volume = Arrays.copyOf(volume, capacity);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,107 @@
+package preti.spark.stock.model;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@SuppressWarnings("serial")
+public class Stock implements Serializable {
+	private String code;
+	private PriceSeries series = new PriceSeries();
+
+	public Stock(String code) {
+		super();
+		this.code = code;
+	}
+
+	public Stock(String code, PriceSeries series) {
+		super();
+		this.code = code;
+		this.series = series;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public PriceSeries getSeries() {
+		return series;
+	}
+
+	/**
+	 * Returns a copy of the history, ordered by date.
+	 */
+	public Map<Date, StockHistory> getHistory() {
+		TreeMap<Date, StockHistory> history = new TreeMap<>();
+		for (int i = 0; i < series.size(); i++) {
+			StockHistory h = getHistoryAt(i);
+			history.put(h.getDate(), h);
+		}
+		return history;
+	}
+
+	/**
+	 * Returns a copy of the history dates, in chronological order.
+	 */
+	public Set<Date> getAllHistoryDates() {
+		Set<Date> dates = new LinkedHashSet<>();
+		for (int i = 0; i < series.size(); i++) {
+			dates.add(getDateAt(i));
+		}
+		return dates;
+	}
+
+	public int getHistorySize() {
+		return series.size();
+	}
+
+	public void addHistory(StockHistory h) {
+		addHistory(EpochDays.fromDate(h.getDate()), h.getHigh(), h.getLow(), h.getClose(), h.getVolume());
+	}
+
+	public void addHistory(int epochDay, double high, double low, double close, double volume) {
+		series.add(epochDay, high, low, close, volume);
+	}
+
+	public StockHistory getHistory(Date d) {
+		int i = series.indexOf(EpochDays.fromDate(d));
+		return i < 0 ? null : getHistoryAt(i);
+	}
+
+	public StockHistory getHistoryAt(int index) {
+		return new StockHistory(getDateAt(index), series.getHigh(index), series.getLow(index),
+				series.getClose(index), series.getVolume(index));
+	}
+
+	public Date getDateAt(int index) {
+		return EpochDays.toDate(series.getDate(index));
+	}
+
+	public double getCloseValueAtDate(Date d) {
+		return series.getClose(floorIndexOf(d));
+	}
+
+	public double getVolumeAtDate(Date d) {
+		return series.getVolume(floorIndexOf(d));
+	}
+
+	public boolean hasHistoryAtDate(Date d) {
+		return series.indexOf(EpochDays.fromDate(d)) >= 0;
+	}
+
+	public int getHistorySizeBeforeDate(Date d) {
+		return series.countBefore(EpochDays.fromDate(d));
+	}
+
+	private int floorIndexOf(Date d) {
+		int i = series.floorIndex(EpochDays.fromDate(d));
+		if (i < 0) {
+			throw new IllegalArgumentException("No history for " + code + " at or before " + d);
+		}
+		return i;
+	}
+
+}
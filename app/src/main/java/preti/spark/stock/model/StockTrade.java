@@ -9,6 +9,9 @@ import java.util.List;
 public class StockTrade implements Serializable {
 	private Stock stock;
 	private List<Trade> trades;
+	// value of the open position at the last close it was marked at, 0 when
+	// not marked
+	private double markedValue;
 
 	public StockTrade(Stock stock) {
 		super();
@@ -70,25 +73,32 @@ public class StockTrade implements Serializable {
 	}
 
 	public Trade getTradeOpenAt(Date d) {
-		Trade tradeOpen = null;
 		for (Trade t : trades) {
 			if (t.getBuyDate().equals(d)) {
-				tradeOpen = t;
-				break;
+				return t;
 			}
 		}
-		return tradeOpen;
+		return null;
 	}
 
+	/**
+	 * Returns the first trade closed at the date, skipping the open one.
+	 */
 	public Trade getTradeClosedAt(Date d) {
-		Trade tradeClosed = null;
 		for (Trade t : trades) {
-			if (t.getSellDate().equals(d)) {
-				tradeClosed = t;
-				break;
+			if (!t.isOpen() && t.getSellDate().equals(d)) {
+				return t;
 			}
 		}
-		return tradeClosed;
+		return null;
+	}
+
+	public double getMarkedValue() {
+		return markedValue;
+	}
+
+	public void setMarkedValue(double markedValue) {
+		this.markedValue = markedValue;
 	}
 
 }
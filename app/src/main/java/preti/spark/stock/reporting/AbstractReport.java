@@ -0,0 +1,65 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
+
+import preti.spark.stock.system.TradeSystem;
+
+public abstract class AbstractReport implements Report {
+	protected static final Log log = LogFactory.getLog(AbstractReport.class);
+
+	// thread-safe, shared by all the reports
+	private static final ObjectWriter JSON_WRITER = new ObjectMapper().writer();
+
+	protected TradeSystem system;
+	protected String outputIp;
+	protected int outputPort;
+	protected String indexName;
+
+	// reused by all the events of the report, built on a single thread
+	private final JsonEventEncoder encoder = new JsonEventEncoder();
+	private volatile long eventCount;
+
+	public AbstractReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
+		super();
+		this.system = system;
+		this.outputIp = outputIp;
+		this.outputPort = outputPort;
+		this.indexName = indexName;
+	}
+
+	@Override
+	public void generate() {
+		generate(new SocketReportSink.Factory());
+	}
+
+	@Override
+	public void generate(ReportSinkFactory sinkFactory) {
+		try (ReportSink sink = sinkFactory.open(outputIp, outputPort, indexName)) {
+			executeReport(sink);
+			eventCount = sink.getEventCount();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	protected void send(ReportSink sink, Object event) throws IOException {
+		if (JsonEventEncoder.supports(event)) {
+			sink.send(encoder.encodeToString(event));
+		} else {
+			sink.send(JSON_WRITER.writeValueAsString(event));
+		}
+	}
+
+	protected abstract void executeReport(ReportSink sink) throws IOException;
+
+}
@@ -0,0 +1,186 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.annotate.JsonPropertyOrder;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockTrade;
+import preti.spark.stock.model.Trade;
+import preti.spark.stock.system.TradeSystem;
+
+public class AggregatedReport extends AbstractReport {
+
+	@SuppressWarnings("serial")
+	@JsonPropertyOrder({ "indexName", "date", "code", "closeValue", "buyValue", "sellValue", "size", "stopPos",
+			"unixTimestamp" })
+	public static class AggregatedEvent implements Serializable, JsonEvent {
+		private String indexName;
+		private Date date;
+		private String code;
+		// NaN for the values missing at the date, reported as null
+		private double closeValue, buyValue, sellValue, size, stopPos;
+
+		public AggregatedEvent(String indexName, Date date, double closeValue, double buyValue, double sellValue,
+				double size, double stopPos, String code) {
+			super();
+			this.indexName = indexName;
+			this.date = date;
+			this.closeValue = closeValue;
+			this.buyValue = buyValue;
+			this.sellValue = sellValue;
+			this.size = size;
+			this.stopPos = stopPos;
+			this.code = code;
+		}
+
+		public String getIndexName() {
+			return indexName;
+		}
+
+		public String getDate() {
+			return new SimpleDateFormat("yyyyMMdd").format(date);
+		}
+
+		public Double getCloseValue() {
+			return valueOrNull(closeValue);
+		}
+
+		public Double getBuyValue() {
+			return valueOrNull(buyValue);
+		}
+
+		public Double getSellValue() {
+			return valueOrNull(sellValue);
+		}
+
+		public Double getSize() {
+			return valueOrNull(size);
+		}
+
+		public Double getStopPos() {
+			return valueOrNull(stopPos);
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		// public double getProfit() {
+		// return sellValue - buyValue;
+		// }
+		//
+		// public boolean isProffitable() {
+		// return getProfit() > 0;
+		// }
+
+		public long getUnixTimestamp() {
+			return date.getTime() / 1000l;
+		}
+
+		@Override
+		public void writeJson(JsonEventEncoder encoder) {
+			encoder.beginObject();
+			encoder.writeField("indexName", indexName);
+			encoder.writeDateField("date", date);
+			encoder.writeField("code", code);
+			encoder.writeOptionalField("closeValue", closeValue);
+			encoder.writeOptionalField("buyValue", buyValue);
+			encoder.writeOptionalField("sellValue", sellValue);
+			encoder.writeOptionalField("size", size);
+			encoder.writeOptionalField("stopPos", stopPos);
+			encoder.writeField("unixTimestamp", getUnixTimestamp());
+			encoder.endObject();
+		}
+
+		private static Double valueOrNull(double value) {
+			return Double.isNaN(value) ? null : value;
+		}
+
+	}
+
+	/**
+	 * The values of the trades of a stock used by the events, by the time of
+	 * the dates they were opened and closed. Built in one pass over the trades,
+	 * it is the only date index of the trades, used by the report on the
+	 * driver and broadcast to the executors by
+	 * {@link DistributedAggregatedReport}, without the price histories the
+	 * trades refer to.
+	 */
+	@SuppressWarnings("serial")
+	public static class TradeSummary implements Serializable {
+		// buy value, size and stop position of the first trade opened at
+		// each date
+		private Map<Long, double[]> openings = new HashMap<>();
+		// sell value, size and stop position of the first trade closed at
+		// each date
+		private Map<Long, double[]> closings = new HashMap<>();
+
+		public TradeSummary(StockTrade stockTrade) {
+			super();
+			for (Trade t : stockTrade.getTrades()) {
+				openings.putIfAbsent(t.getBuyDate().getTime(),
+						new double[] { t.getBuyValue(), t.getSize(), t.getStopPos() });
+				if (!t.isOpen()) {
+					closings.putIfAbsent(t.getSellDate().getTime(),
+							new double[] { t.getSellValue(), t.getSize(), t.getStopPos() });
+				}
+			}
+		}
+	}
+
+	public AggregatedReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
+		super(system, outputIp, outputPort, indexName);
+	}
+
+	@Override
+	protected void executeReport(ReportSink sink) throws IOException {
+		log.info("Generating aggregated report ");
+		Collection<StockTrade> wallet = system.getWallet();
+		for (StockTrade st : wallet) {
+			for (AggregatedEvent event : createEvents(st.getStock(), new TradeSummary(st), indexName)) {
+				send(sink, event);
+			}
+		}
+
+	}
+
+	static List<AggregatedEvent> createEvents(Stock stock, TradeSummary trades, String indexName) {
+		List<AggregatedEvent> events = new ArrayList<>(stock.getHistorySize());
+		for (int i = 0; i < stock.getHistorySize(); i++) {
+			Date d = stock.getDateAt(i);
+			double closeValue = stock.getSeries().getClose(i);
+			double buyValue = Double.NaN;
+			double sellValue = Double.NaN;
+			double size = Double.NaN;
+			double stopPos = Double.NaN;
+
+			double[] openingTrade = trades.openings.get(d.getTime());
+			if (openingTrade != null) {
+				buyValue = openingTrade[0];
+				size = openingTrade[1];
+				stopPos = openingTrade[2];
+			}
+
+			double[] closingTrade = trades.closings.get(d.getTime());
+			if (closingTrade != null) {
+				sellValue = closingTrade[0];
+				size = closingTrade[1];
+				stopPos = closingTrade[2];
+			}
+
+			events.add(new AggregatedEvent(indexName, d, closeValue, buyValue, sellValue, size, stopPos,
+					stock.getCode()));
+		}
+		return events;
+	}
+
+}
@@ -1,25 +1,24 @@
 package preti.spark.stock.reporting;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.annotate.JsonPropertyOrder;
 
 import preti.spark.stock.system.TradeSystem;
 
 public class BalanceReport extends AbstractReport {
 	@SuppressWarnings("serial")
-	public class BalanceEvent implements Serializable {
+	@JsonPropertyOrder({ "indexName", "date", "balance", "equity", "unixTimestamp" })
+	public static class BalanceEvent implements Serializable, JsonEvent {
 
 		private String indexName;
 		private Date date;
 		private Double balance;
+		private Double equity;
 
 		
 		public String getIndexName() {
@@ -34,35 +33,44 @@ public class BalanceReport extends AbstractReport {
 			return balance;
 		}
 
-		public BalanceEvent(Date d, Double balance, String indexName) {
+		public Double getEquity() {
+			return equity;
+		}
+
+		public BalanceEvent(Date d, Double balance, Double equity, String indexName) {
 			this.date = d;
 			this.balance = balance;
+			this.equity = equity;
 			this.indexName = indexName;
 		}
 		
 		public long getUnixTimestamp() {
 			return date.getTime() / 1000l;
 		}
+
+		@Override
+		public void writeJson(JsonEventEncoder encoder) {
+			encoder.beginObject();
+			encoder.writeField("indexName", indexName);
+			encoder.writeDateField("date", date);
+			encoder.writeField("balance", balance);
+			encoder.writeField("equity", equity);
+			encoder.writeField("unixTimestamp", getUnixTimestamp());
+			encoder.endObject();
+		}
 	}
 
 	public BalanceReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
 		super(system, outputIp, outputPort, indexName);
 	}
 
-	public void executeReport() throws IOException {
+	public void executeReport(ReportSink sink) throws IOException {
 		log.info("Generating balance report ");
-		Socket socket = new Socket(outputIp, outputPort);
-		OutputStream stream = socket.getOutputStream();
-		PrintWriter writer = new PrintWriter(stream, true);
-
-		ObjectMapper mapper = new ObjectMapper();
-
 		Map<Date, Double> balanceHistory = system.getBalanceHistory();
+		Map<Date, Double> equityHistory = system.getEquityHistory();
 		for (Date d : balanceHistory.keySet()) {
-			writer.println(mapper.writeValueAsString(new BalanceEvent(d, balanceHistory.get(d), this.indexName)));
+			send(sink, new BalanceEvent(d, balanceHistory.get(d), equityHistory.get(d), this.indexName));
 		}
-		writer.close();
-		socket.close();
 	}
 
 }
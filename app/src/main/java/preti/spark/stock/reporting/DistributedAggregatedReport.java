@@ -0,0 +1,56 @@
+package preti.spark.stock.reporting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockTrade;
+import preti.spark.stock.reporting.AggregatedReport.TradeSummary;
+import preti.spark.stock.system.TradeSystem;
+
+/**
+ * {@link AggregatedReport} built on the executors, which receive a broadcast
+ * summary of the trades of each stock.
+ */
+public class DistributedAggregatedReport extends DistributedReport {
+	private JavaSparkContext sc;
+	private Broadcast<Map<String, TradeSummary>> trades;
+
+	public DistributedAggregatedReport(JavaSparkContext sc, TradeSystem system, JavaPairRDD<String, Stock> stocks,
+			String outputIp, int outputPort, String indexName) {
+		super(system, stocks, outputIp, outputPort, indexName);
+		this.sc = sc;
+	}
+
+	@Override
+	public void generate(ReportSinkFactory sinkFactory) {
+		try {
+			super.generate(sinkFactory);
+		} finally {
+			if (trades != null) {
+				trades.unpersist();
+				trades = null;
+			}
+		}
+	}
+
+	@Override
+	protected JavaRDD<String> createEvents(JavaPairRDD<String, Stock> systemStocks) {
+		log.info("Generating aggregated report on the executors");
+		Map<String, TradeSummary> summaries = new HashMap<>();
+		for (StockTrade st : system.getWallet()) {
+			summaries.put(st.getStock().getCode(), new TradeSummary(st));
+		}
+		Broadcast<Map<String, TradeSummary>> trades = sc.broadcast(summaries);
+		this.trades = trades;
+		String indexName = this.indexName;
+		return systemStocks.mapPartitions(it -> toJson(it,
+				s -> AggregatedReport.createEvents(s, trades.value().get(s.getCode()), indexName)));
+	}
+
+}
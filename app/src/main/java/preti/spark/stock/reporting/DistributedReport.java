@@ -0,0 +1,117 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradeSystem;
+import scala.Tuple2;
+
+/**
+ * Report whose events are built and serialized on the executors, out of the
+ * distributed stock histories, and sent from each partition in parallel. The
+ * driver only ships what the events need from the {@link TradeSystem}.
+ */
+public abstract class DistributedReport implements Report {
+	protected static final Log log = LogFactory.getLog(DistributedReport.class);
+
+	protected TradeSystem system;
+	protected JavaPairRDD<String, Stock> stocks;
+	protected String outputIp;
+	protected int outputPort;
+	protected String indexName;
+
+	private volatile long eventCount;
+
+	public DistributedReport(TradeSystem system, JavaPairRDD<String, Stock> stocks, String outputIp, int outputPort,
+			String indexName) {
+		super();
+		this.system = system;
+		this.stocks = stocks;
+		this.outputIp = outputIp;
+		this.outputPort = outputPort;
+		this.indexName = indexName;
+	}
+
+	@Override
+	public void generate() {
+		generate(new SocketReportSink.Factory());
+	}
+
+	@Override
+	public void generate(ReportSinkFactory sinkFactory) {
+		Set<String> codes = new HashSet<>();
+		for (Stock s : system.getStocks()) {
+			codes.add(s.getCode());
+		}
+		JavaPairRDD<String, Stock> systemStocks = stocks.filter(t -> codes.contains(t._1()));
+		try {
+			eventCount = sinkFactory.saveJson(createEvents(systemStocks), outputIp, outputPort, indexName);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * Returns the JSON events of the stocks of the system.
+	 */
+	protected abstract JavaRDD<String> createEvents(JavaPairRDD<String, Stock> systemStocks);
+
+	/**
+	 * Serializes the events of the stocks of a partition as they are consumed,
+	 * with one encoder for the whole partition and the events of a single stock
+	 * in memory at a time.
+	 */
+	protected static Iterable<String> toJson(Iterator<Tuple2<String, Stock>> stocks,
+			Function<Stock, List<?>> createEvents) {
+		JsonEventEncoder encoder = new JsonEventEncoder();
+		ObjectWriter writer = new ObjectMapper().writer();
+		return () -> new Iterator<String>() {
+			private Iterator<?> events = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!events.hasNext() && stocks.hasNext()) {
+					events = createEvents.apply(stocks.next()._2()).iterator();
+				}
+				return events.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Object event = events.next();
+				if (JsonEventEncoder.supports(event)) {
+					return encoder.encodeToString(event);
+				}
+				try {
+					return writer.writeValueAsString(event);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+
+}
@@ -0,0 +1,26 @@
+package preti.spark.stock.reporting;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradeSystem;
+
+/**
+ * {@link StockReport} built on the executors.
+ */
+public class DistributedStockReport extends DistributedReport {
+
+	public DistributedStockReport(TradeSystem system, JavaPairRDD<String, Stock> stocks, String outputIp,
+			int outputPort, String indexName) {
+		super(system, stocks, outputIp, outputPort, indexName);
+	}
+
+	@Override
+	protected JavaRDD<String> createEvents(JavaPairRDD<String, Stock> systemStocks) {
+		log.info("Generating stock report on the executors");
+		String indexName = this.indexName;
+		return systemStocks.mapPartitions(it -> toJson(it, s -> StockReport.createEvents(s, indexName)));
+	}
+
+}
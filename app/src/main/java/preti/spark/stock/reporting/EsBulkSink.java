@@ -0,0 +1,103 @@
+package preti.spark.stock.reporting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Sink that indexes the events straight into Elasticsearch from the process
+ * that sends them, with bulk requests of "es.batch.size.entries" documents
+ * (1000 by default) posted to the first node of "es.nodes", on "es.port"
+ * unless the node has its own port.
+ */
+class EsBulkSink implements ReportSink {
+	static final int DEFAULT_BATCH_ENTRIES = 1000;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private URL bulkUrl;
+	private byte[] action;
+	private int batchEntries;
+	private ByteArrayOutputStream batch = new ByteArrayOutputStream();
+	private int batchSize;
+	private long eventCount;
+
+	EsBulkSink(Map<String, String> esConfig, String index, String type) throws IOException {
+		super();
+		String node = esConfig.getOrDefault("es.nodes", "localhost").split(",")[0].trim();
+		if (!node.contains(":")) {
+			node += ":" + esConfig.getOrDefault("es.port", "9200");
+		}
+		this.bulkUrl = new URL((node.startsWith("http") ? "" : "http://") + node + "/_bulk");
+		this.action = String.format("{\"index\":{\"_index\":\"%s\",\"_type\":\"%s\"}}\n", index, type)
+				.getBytes(StandardCharsets.UTF_8);
+		this.batchEntries = Integer.parseInt(
+				esConfig.getOrDefault("es.batch.size.entries", String.valueOf(DEFAULT_BATCH_ENTRIES)));
+		if (batchEntries < 1) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+	}
+
+	@Override
+	public void send(String json) throws IOException {
+		batch.write(action);
+		batch.write(json.getBytes(StandardCharsets.UTF_8));
+		batch.write('\n');
+		batchSize++;
+		eventCount++;
+		if (batchSize >= batchEntries) {
+			flush();
+		}
+	}
+
+	@Override
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	private void flush() throws IOException {
+		if (batchSize == 0) {
+			return;
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) bulkUrl.openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-ndjson");
+			connection.setFixedLengthStreamingMode(batch.size());
+			try (OutputStream out = connection.getOutputStream()) {
+				batch.writeTo(out);
+			}
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new IOException(String.format("Bulk request to %s failed with status %s", bulkUrl, status));
+			}
+			JsonNode response;
+			try (InputStream in = connection.getInputStream()) {
+				response = mapper.readTree(in);
+			}
+			if (response.path("errors").asBoolean()) {
+				throw new IOException("Bulk request to " + bulkUrl + " had failed items: " + response.path("items"));
+			}
+		} finally {
+			connection.disconnect();
+		}
+		batch.reset();
+		batchSize = 0;
+	}
+
+}
@@ -0,0 +1,73 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
+import org.elasticsearch.spark.rdd.api.java.JavaEsSpark;
+
+/**
+ * Indexes the report events straight into Elasticsearch, each report in the
+ * index named after it. The event RDDs of the reports built on the executors
+ * are saved with elasticsearch-spark, each partition writing in parallel with
+ * bulk requests of "es.batch.size.entries" documents, and the events sent from
+ * the driver go in bulk requests of the same size (see {@link EsBulkSink}).
+ * The socket host and port of the reports are ignored; the nodes come from
+ * "es.nodes" and "es.port".
+ */
+public class EsReportSinkFactory implements ReportSinkFactory {
+	private static final Log log = LogFactory.getLog(EsReportSinkFactory.class);
+
+	public static final String DEFAULT_TYPE = "event";
+
+	private Map<String, String> esConfig;
+	private String type;
+
+	public EsReportSinkFactory(Map<String, String> esConfig) {
+		this(esConfig, DEFAULT_TYPE);
+	}
+
+	/**
+	 * @param esConfig
+	 *            elasticsearch-spark settings, such as es.nodes, es.port and
+	 *            es.batch.size.entries
+	 * @param type
+	 *            document type of the events
+	 */
+	public EsReportSinkFactory(Map<String, String> esConfig, String type) {
+		super();
+		this.esConfig = new HashMap<>(esConfig);
+		this.type = type;
+	}
+
+	@Override
+	public ReportSink open(String outputIp, int outputPort, String indexName) throws IOException {
+		return new EsBulkSink(esConfig, indexName, type);
+	}
+
+	/**
+	 * The events are kept serialized while they are counted and then indexed,
+	 * so they are built only once.
+	 */
+	@Override
+	public long saveJson(JavaRDD<String> events, String outputIp, int outputPort, String indexName)
+			throws IOException {
+		String resource = indexName + "/" + type;
+		events.persist(StorageLevel.MEMORY_AND_DISK_SER());
+		try {
+			long eventCount = events.count();
+			log.info(String.format("Indexing %s events in %s", eventCount, resource));
+			JavaEsSpark.saveJsonToEs(events, resource, esConfig);
+			return eventCount;
+		} catch (RuntimeException e) {
+			throw new IOException("Could not index events in " + resource, e);
+		} finally {
+			events.unpersist();
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+package preti.spark.stock.reporting;
+
+/**
+ * Report event able to write itself with a {@link JsonEventEncoder}, producing
+ * the same JSON as Jackson does for its properties.
+ */
+interface JsonEvent {
+
+	void writeJson(JsonEventEncoder encoder);
+
+}
@@ -0,0 +1,308 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import preti.spark.stock.model.EpochDays;
+
+/**
+ * Streaming JSON encoder of the report events. Fields are written straight
+ * into a reusable UTF-8 byte buffer, without reflection or boxing, and the
+ * output is byte for byte the one of Jackson's ObjectMapper for the same event:
+ * same property order, string escapes, number formats and yyyyMMdd dates in
+ * the default time zone. Not thread-safe; use one encoder per thread.
+ */
+public class JsonEventEncoder {
+	private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+	private static final String DATE_FORMAT = "yyyyMMdd";
+
+	// escapes of the ASCII characters: 0 for none, -1 for a \\u00XX escape or
+	// the character following the backslash
+	private static final int[] ESCAPES = new int[128];
+
+	static {
+		Arrays.fill(ESCAPES, 0, 32, -1);
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\f'] = 'f';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\r'] = 'r';
+	}
+
+	private byte[] buffer = new byte[256];
+	private int length;
+	private boolean firstField;
+
+	// yyyyMMdd digits of the last formatted day
+	private int cachedEpochDay = Integer.MIN_VALUE;
+	private byte[] cachedDate = new byte[8];
+
+	public static boolean supports(Object event) {
+		return event instanceof JsonEvent;
+	}
+
+	/**
+	 * Encodes the event into the buffer, replacing its previous contents.
+	 */
+	public JsonEventEncoder encode(Object event) {
+		if (!supports(event)) {
+			throw new IllegalArgumentException("Unsupported event type: " + event.getClass().getName());
+		}
+		length = 0;
+		((JsonEvent) event).writeJson(this);
+		return this;
+	}
+
+	public String encodeToString(Object event) {
+		return encode(event).toString();
+	}
+
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, length);
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	void beginObject() {
+		writeByte('{');
+		firstField = true;
+	}
+
+	void endObject() {
+		writeByte('}');
+	}
+
+	void writeField(String name, String value) {
+		writeName(name);
+		if (value == null) {
+			writeBytes(NULL);
+		} else {
+			writeString(value);
+		}
+	}
+
+	void writeField(String name, double value) {
+		writeName(name);
+		writeDouble(value);
+	}
+
+	void writeField(String name, Double value) {
+		writeName(name);
+		if (value == null) {
+			writeBytes(NULL);
+		} else {
+			writeDouble(value);
+		}
+	}
+
+	/**
+	 * Writes a value kept as NaN when missing, as null in that case.
+	 */
+	void writeOptionalField(String name, double value) {
+		writeName(name);
+		if (Double.isNaN(value)) {
+			writeBytes(NULL);
+		} else {
+			writeDouble(value);
+		}
+	}
+
+	void writeField(String name, long value) {
+		writeName(name);
+		writeLong(value);
+	}
+
+	void writeField(String name, boolean value) {
+		writeName(name);
+		writeBytes(value ? TRUE : FALSE);
+	}
+
+	/**
+	 * Writes the date as a yyyyMMdd string.
+	 */
+	void writeDateField(String name, Date date) {
+		writeName(name);
+		int epochDay = EpochDays.fromMillis(date.getTime());
+		if (epochDay != cachedEpochDay && !formatDate(epochDay)) {
+			writeString(new SimpleDateFormat(DATE_FORMAT).format(date));
+			return;
+		}
+		writeByte('"');
+		ensureCapacity(8);
+		System.arraycopy(cachedDate, 0, buffer, length, 8);
+		length += 8;
+		writeByte('"');
+	}
+
+	/**
+	 * Writes the date as its time in milliseconds, as Jackson does by default.
+	 */
+	void writeTimestampField(String name, Date date) {
+		writeName(name);
+		if (date == null) {
+			writeBytes(NULL);
+		} else {
+			writeLong(date.getTime());
+		}
+	}
+
+	private void writeName(String name) {
+		if (!firstField) {
+			writeByte(',');
+		}
+		firstField = false;
+		writeString(name);
+		writeByte(':');
+	}
+
+	/**
+	 * Fills the cached digits with the civil date of the epoch day, returning
+	 * false for years outside 1583-9999, left to SimpleDateFormat.
+	 */
+	private boolean formatDate(int epochDay) {
+		// days to civil date, from Howard Hinnant's algorithm
+		long z = epochDay + 719468L;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		if (year < 1583 || year > 9999) {
+			return false;
+		}
+
+		int y = (int) year;
+		cachedDate[0] = (byte) ('0' + y / 1000);
+		cachedDate[1] = (byte) ('0' + y / 100 % 10);
+		cachedDate[2] = (byte) ('0' + y / 10 % 10);
+		cachedDate[3] = (byte) ('0' + y % 10);
+		cachedDate[4] = (byte) ('0' + month / 10);
+		cachedDate[5] = (byte) ('0' + month % 10);
+		cachedDate[6] = (byte) ('0' + day / 10);
+		cachedDate[7] = (byte) ('0' + day % 10);
+		cachedEpochDay = epochDay;
+		return true;
+	}
+
+	private void writeDouble(double value) {
+		String s = Double.toString(value);
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			// quoted, as Jackson does for non numeric numbers
+			writeString(s);
+		} else {
+			writeAscii(s);
+		}
+	}
+
+	private void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(Long.toString(value));
+			return;
+		}
+		ensureCapacity(20);
+		if (value < 0) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+	}
+
+	private void writeString(String s) {
+		// quotes plus the worst case of 6 bytes per character
+		ensureCapacity(2 + 6 * s.length());
+		buffer[length++] = '"';
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 128) {
+				int escape = ESCAPES[c];
+				if (escape == 0) {
+					buffer[length++] = (byte) c;
+				} else if (escape > 0) {
+					buffer[length++] = '\\';
+					buffer[length++] = (byte) escape;
+				} else {
+					buffer[length++] = '\\';
+					buffer[length++] = 'u';
+					buffer[length++] = '0';
+					buffer[length++] = '0';
+					buffer[length++] = HEX_DIGITS[c >> 4];
+					buffer[length++] = HEX_DIGITS[c & 0xF];
+				}
+			} else if (c < 0x800) {
+				buffer[length++] = (byte) (0xC0 | (c >> 6));
+				buffer[length++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates can't be encoded, as UTF-8 writers do
+				buffer[length++] = '?';
+			} else {
+				buffer[length++] = (byte) (0xE0 | (c >> 12));
+				buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[length++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		buffer[length++] = '"';
+	}
+
+	private void writeAscii(String s) {
+		ensureCapacity(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			buffer[length++] = (byte) s.charAt(i);
+		}
+	}
+
+	private void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void writeByte(char c) {
+		ensureCapacity(1);
+		buffer[length++] = (byte) c;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+	}
+
+}
@@ -1,15 +1,12 @@
 package preti.spark.stock.reporting;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.annotate.JsonPropertyOrder;
 
 import preti.spark.stock.model.StockTrade;
 import preti.spark.stock.model.Trade;
@@ -21,7 +18,9 @@ public class OperationsReport extends AbstractReport {
 	};
 
 	@SuppressWarnings("serial")
-	public class OperationEvent implements Serializable {
+	@JsonPropertyOrder({ "indexName", "type", "stockCode", "date", "size", "stopPos", "profitable", "value", "status",
+			"gain", "unixTimestamp" })
+	public static class OperationEvent implements Serializable, JsonEvent {
 
 		private String indexName;
 		private OperationType type;
@@ -100,6 +99,23 @@ public class OperationsReport extends AbstractReport {
 			return date.getTime() / 1000l;
 		}
 
+		@Override
+		public void writeJson(JsonEventEncoder encoder) {
+			encoder.beginObject();
+			encoder.writeField("indexName", indexName);
+			encoder.writeField("type", getType());
+			encoder.writeField("stockCode", stockCode);
+			encoder.writeDateField("date", date);
+			encoder.writeField("size", size);
+			encoder.writeField("stopPos", stopPos);
+			encoder.writeField("profitable", profitable);
+			encoder.writeField("value", getValue());
+			encoder.writeField("status", getStatus());
+			encoder.writeField("gain", getGain());
+			encoder.writeField("unixTimestamp", getUnixTimestamp());
+			encoder.endObject();
+		}
+
 	}
 
 	public OperationsReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
@@ -107,30 +123,24 @@ public class OperationsReport extends AbstractReport {
 	}
 
 	@Override
-	protected void executeReport() throws IOException {
+	protected void executeReport(ReportSink sink) throws IOException {
 		log.info("Generating operations report ");
-		Socket socket = new Socket(outputIp, outputPort);
-		OutputStream stream = socket.getOutputStream();
-		PrintWriter writer = new PrintWriter(stream, true);
-
-		ObjectMapper mapper = new ObjectMapper();
-
 		Collection<StockTrade> wallet = system.getWallet();
 		for (StockTrade st : wallet) {
 			for (Trade t : st.getTrades()) {
-				log.info("Generating report for trade " + t);
+				if (log.isDebugEnabled()) {
+					log.debug("Generating report for trade " + t);
+				}
 				boolean proffitable = t.isProfitable();
 				OperationEvent buyEvent = new OperationEvent(this.indexName, OperationType.BUY, t.getStock().getCode(),
 						t.getBuyDate(), t.getSize(), t.getStopPos(), t.getBuyValue(), t.getSellValue(), proffitable);
 				OperationEvent sellEvent = new OperationEvent(this.indexName, OperationType.SELL,
 						t.getStock().getCode(), t.getSellDate(), t.getSize(), t.getStopPos(), t.getBuyValue(), t.getSellValue(),
 						proffitable);
-				writer.println(mapper.writeValueAsString(buyEvent));
-				writer.println(mapper.writeValueAsString(sellEvent));
+				send(sink, buyEvent);
+				send(sink, sellEvent);
 			}
 		}
-		writer.close();
-		socket.close();
 
 	}
 
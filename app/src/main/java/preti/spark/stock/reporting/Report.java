@@ -0,0 +1,12 @@
+package preti.spark.stock.reporting;
+
+public interface Report {
+	void generate();
+
+	void generate(ReportSinkFactory sinkFactory);
+
+	/**
+	 * Returns the number of events sent by the last generation.
+	 */
+	long getEventCount();
+}
@@ -0,0 +1,117 @@
+package preti.spark.stock.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+
+/**
+ * Generates a set of reports concurrently, each one sending its events to a
+ * sink opened by the same factory, and measures the event throughput. The time
+ * of each report is added to the metrics of the calling thread.
+ */
+public class ReportPipeline {
+	private static final Log log = LogFactory.getLog(ReportPipeline.class);
+
+	private ReportSinkFactory sinkFactory;
+	private int threads;
+	private List<Report> reports = new ArrayList<>();
+
+	private long eventCount;
+	private long elapsedMillis;
+
+	public ReportPipeline(ReportSinkFactory sinkFactory, int threads) {
+		super();
+		if (threads < 1) {
+			throw new IllegalArgumentException("The pipeline needs at least one thread.");
+		}
+		this.sinkFactory = sinkFactory;
+		this.threads = threads;
+	}
+
+	public ReportPipeline add(Report report) {
+		reports.add(report);
+		return this;
+	}
+
+	/**
+	 * Generates all the reports, waiting for them to finish. If any of them
+	 * fails, the others still run to the end and the first failure is thrown.
+	 */
+	public void run() {
+		if (reports.isEmpty()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		long[] reportNanos = new long[reports.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, reports.size()));
+		RuntimeException failure = null;
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < reports.size(); i++) {
+				Report report = reports.get(i);
+				int index = i;
+				results.add(executor.submit(() -> {
+					long reportStart = System.nanoTime();
+					try {
+						report.generate(sinkFactory);
+					} finally {
+						reportNanos[index] = System.nanoTime() - reportStart;
+					}
+				}));
+			}
+			for (Future<?> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = new RuntimeException("Report generation failed", e.getCause());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = new RuntimeException("Interrupted while generating reports", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		elapsedMillis = elapsedNanos / 1000000;
+
+		eventCount = 0;
+		for (int i = 0; i < reports.size(); i++) {
+			eventCount += reports.get(i).getEventCount();
+			Metrics.addTime("report." + reports.get(i).getClass().getSimpleName(), reportNanos[i]);
+		}
+		Metrics.add(Counter.REPORT_EVENTS, eventCount);
+		Metrics.addTime("reports", elapsedNanos);
+		log.info(String.format("Generated %s report(s) with %s events in %s ms (%.1f events/s)", reports.size(),
+				eventCount, elapsedMillis, getEventsPerSecond()));
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double getEventsPerSecond() {
+		return elapsedMillis == 0 ? eventCount * 1000d : eventCount * 1000d / elapsedMillis;
+	}
+
+}
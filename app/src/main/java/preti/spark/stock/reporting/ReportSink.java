@@ -0,0 +1,16 @@
+package preti.spark.stock.reporting;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the JSON events of a report. Closing the sink delivers the
+ * events still pending.
+ */
+public interface ReportSink extends Closeable {
+
+	void send(String json) throws IOException;
+
+	long getEventCount();
+
+}
@@ -0,0 +1,21 @@
+package preti.spark.stock.reporting;
+
+import java.io.IOException;
+
+import org.apache.spark.api.java.JavaRDD;
+
+/**
+ * Opens the sinks where the reports send their events, and sends the events of
+ * the reports built on the executors.
+ */
+public interface ReportSinkFactory {
+
+	ReportSink open(String outputIp, int outputPort, String indexName) throws IOException;
+
+	/**
+	 * Sends the events, writing from each partition in parallel, and returns
+	 * the number of events sent.
+	 */
+	long saveJson(JavaRDD<String> events, String outputIp, int outputPort, String indexName) throws IOException;
+
+}
@@ -0,0 +1,174 @@
+package preti.spark.stock.reporting;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.spark.api.java.JavaRDD;
+
+/**
+ * Sends the events, one JSON per line, to a socket. Events are queued and
+ * written by a background thread in batches of up to the flush size, with one
+ * flush per batch. The queue is bounded, so a report producing events faster
+ * than the socket takes them blocks until there is room again.
+ */
+public class SocketReportSink implements ReportSink {
+	public static final int DEFAULT_FLUSH_SIZE = 1000;
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	// compared by identity to tell the writer thread to stop
+	private static final String END = new String("END");
+
+	public static class Factory implements ReportSinkFactory {
+		private int flushSize;
+		private int queueCapacity;
+
+		public Factory() {
+			this(DEFAULT_FLUSH_SIZE, DEFAULT_QUEUE_CAPACITY);
+		}
+
+		public Factory(int flushSize, int queueCapacity) {
+			super();
+			if (flushSize < 1 || queueCapacity < 1) {
+				throw new IllegalArgumentException("Flush size and queue capacity must be positive.");
+			}
+			this.flushSize = flushSize;
+			this.queueCapacity = queueCapacity;
+		}
+
+		@Override
+		public ReportSink open(String outputIp, int outputPort, String indexName) throws IOException {
+			return new SocketReportSink(outputIp, outputPort, flushSize, queueCapacity);
+		}
+
+		/**
+		 * Each partition writes its events through its own connection.
+		 */
+		@Override
+		public long saveJson(JavaRDD<String> events, String outputIp, int outputPort, String indexName)
+				throws IOException {
+			int flushSize = this.flushSize;
+			int queueCapacity = this.queueCapacity;
+			List<Long> sent = events.mapPartitions(it -> {
+				try (ReportSink sink = new SocketReportSink(outputIp, outputPort, flushSize, queueCapacity)) {
+					while (it.hasNext()) {
+						sink.send(it.next());
+					}
+					return Collections.singletonList(sink.getEventCount());
+				}
+			}).collect();
+
+			long eventCount = 0;
+			for (long count : sent) {
+				eventCount += count;
+			}
+			return eventCount;
+		}
+	}
+
+	private Socket socket;
+	private Writer writer;
+	private int flushSize;
+	private BlockingQueue<String> queue;
+	private Thread writerThread;
+	private volatile IOException failure;
+	private long eventCount;
+	private boolean closed;
+
+	public SocketReportSink(String outputIp, int outputPort, int flushSize, int queueCapacity) throws IOException {
+		super();
+		this.socket = new Socket(outputIp, outputPort);
+		this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+		this.flushSize = flushSize;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.writerThread = new Thread(this::writeBatches, "report-sink-" + outputIp + ":" + outputPort);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	public void send(String json) throws IOException {
+		checkFailure();
+		enqueue(json);
+		eventCount++;
+	}
+
+	@Override
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			enqueue(END);
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing the report sink");
+		} finally {
+			socket.close();
+		}
+		checkFailure();
+	}
+
+	private void enqueue(String line) throws IOException {
+		try {
+			while (!queue.offer(line, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while sending report events");
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("Could not write report events to " + socket.getRemoteSocketAddress(), failure);
+		}
+	}
+
+	private void writeBatches() {
+		List<String> batch = new ArrayList<>(flushSize);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, flushSize - 1);
+				for (String line : batch) {
+					if (line == END) {
+						writer.flush();
+						return;
+					}
+					writer.write(line);
+					writer.write(LINE_SEPARATOR);
+				}
+				writer.flush();
+				batch.clear();
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException("Report sink writer interrupted");
+		} catch (RuntimeException e) {
+			failure = new IOException(e);
+		}
+	}
+
+}
@@ -1,24 +1,23 @@
 package preti.spark.stock.reporting;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.annotate.JsonPropertyOrder;
 
+import preti.spark.stock.model.PriceSeries;
 import preti.spark.stock.model.Stock;
-import preti.spark.stock.model.StockHistory;
 import preti.spark.stock.system.TradeSystem;
 
 public class StockReport extends AbstractReport {
 
 	@SuppressWarnings("serial")
-	public class StockHistoryEvent implements Serializable {
+	@JsonPropertyOrder({ "indexName", "code", "date", "high", "low", "close", "volume", "unixTimestamp" })
+	public static class StockHistoryEvent implements Serializable, JsonEvent {
 
 		private String indexName;
 		private String code;
@@ -68,30 +67,44 @@ public class StockReport extends AbstractReport {
 			return date.getTime() / 1000l;
 		}
 
+		@Override
+		public void writeJson(JsonEventEncoder encoder) {
+			encoder.beginObject();
+			encoder.writeField("indexName", indexName);
+			encoder.writeField("code", code);
+			encoder.writeDateField("date", date);
+			encoder.writeField("high", high);
+			encoder.writeField("low", low);
+			encoder.writeField("close", close);
+			encoder.writeField("volume", volume);
+			encoder.writeField("unixTimestamp", getUnixTimestamp());
+			encoder.endObject();
+		}
+
 	}
 
 	public StockReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
 		super(system, outputIp, outputPort, indexName);
 	}
 
-	public void executeReport() throws IOException {
+	public void executeReport(ReportSink sink) throws IOException {
 		log.info("Generating stock report ");
-		Socket socket = new Socket(outputIp, outputPort);
-		OutputStream stream = socket.getOutputStream();
-		PrintWriter writer = new PrintWriter(stream, true);
-
-		ObjectMapper mapper = new ObjectMapper();
-
 		List<Stock> stocks = system.getStocks();
 		for (Stock s : stocks) {
-			for (Date d : s.getAllHistoryDates()) {
-				StockHistory history = s.getHistory(d);
-				writer.println(mapper.writeValueAsString(new StockHistoryEvent(s.getCode(), d, history.getHigh(), history.getLow(),
-						history.getClose(), history.getVolume(), this.indexName)));
+			for (StockHistoryEvent event : createEvents(s, this.indexName)) {
+				send(sink, event);
 			}
 		}
-		writer.close();
-		socket.close();
+	}
+
+	static List<StockHistoryEvent> createEvents(Stock s, String indexName) {
+		PriceSeries series = s.getSeries();
+		List<StockHistoryEvent> events = new ArrayList<>(series.size());
+		for (int i = 0; i < series.size(); i++) {
+			events.add(new StockHistoryEvent(s.getCode(), s.getDateAt(i), series.getHigh(i), series.getLow(i),
+					series.getClose(i), series.getVolume(i), indexName));
+		}
+		return events;
 	}
 
 }
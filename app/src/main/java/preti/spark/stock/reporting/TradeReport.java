@@ -1,15 +1,12 @@
 package preti.spark.stock.reporting;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.net.Socket;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.annotate.JsonPropertyOrder;
 
 import preti.spark.stock.model.StockTrade;
 import preti.spark.stock.model.Trade;
@@ -18,7 +15,8 @@ import preti.spark.stock.system.TradeSystem;
 public class TradeReport extends AbstractReport {
 
 	@SuppressWarnings("serial")
-	public class TradeEvent implements Serializable {
+	@JsonPropertyOrder({ "indexName", "buyDate", "sellDate", "stockCode", "size", "stopPos", "date" })
+	public static class TradeEvent implements Serializable, JsonEvent {
 
 		private String indexName;
 		private Date buyDate, sellDate;
@@ -64,6 +62,19 @@ public class TradeReport extends AbstractReport {
 			return stopPos;
 		}
 
+		@Override
+		public void writeJson(JsonEventEncoder encoder) {
+			encoder.beginObject();
+			encoder.writeField("indexName", indexName);
+			encoder.writeTimestampField("buyDate", buyDate);
+			encoder.writeTimestampField("sellDate", sellDate);
+			encoder.writeField("stockCode", stockCode);
+			encoder.writeField("size", size);
+			encoder.writeField("stopPos", stopPos);
+			encoder.writeDateField("date", buyDate);
+			encoder.endObject();
+		}
+
 	}
 
 	public TradeReport(TradeSystem system, String outputIp, int outputPort, String indexName) {
@@ -71,24 +82,18 @@ public class TradeReport extends AbstractReport {
 	}
 
 	@Override
-	protected void executeReport() throws IOException {
+	protected void executeReport(ReportSink sink) throws IOException {
 		log.info("Generating trade report ");
-		Socket socket = new Socket(outputIp, outputPort);
-		OutputStream stream = socket.getOutputStream();
-		PrintWriter writer = new PrintWriter(stream, true);
-
-		ObjectMapper mapper = new ObjectMapper();
-
 		Collection<StockTrade> wallet = system.getWallet();
 		for (StockTrade st : wallet) {
 			for (Trade t : st.getTrades()) {
-				log.info("Generating report for trade " + t);
-				writer.println(mapper.writeValueAsString(new TradeEvent(t.getBuyDate(), t.getSellDate(),
-						t.getStock().getCode(), t.getSize(), t.getStopPos(), this.indexName)));
+				if (log.isDebugEnabled()) {
+					log.debug("Generating report for trade " + t);
+				}
+				send(sink, new TradeEvent(t.getBuyDate(), t.getSellDate(), t.getStock().getCode(), t.getSize(),
+						t.getStopPos(), this.indexName));
 			}
 		}
-		writer.close();
-		socket.close();
 
 	}
 
@@ -0,0 +1,161 @@
+package preti.spark.stock.system;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.spark.SparkEnv;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import preti.spark.stock.metrics.MetricValues;
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.Stock;
+import scala.Tuple2;
+
+/**
+ * Runs the parameter search of a {@link ParameterOptimizer} on the Spark
+ * executors, with the same outcome of the sequential search. When the
+ * objective supports it, each (stock, window) pair is a task that evaluates the
+ * whole grid with {@link GridBacktest}. Otherwise every (stock, window, entry
+ * size, exit size) combination becomes an element of an RDD and the results
+ * are reduced to the best parameters per stock and window. The metrics
+ * recorded by the tasks, their time per window and the throughput of each
+ * executor are returned along with the results and merged into the driver's.
+ */
+public class DistributedParameterOptimizer {
+	private static final Log log = LogFactory.getLog(DistributedParameterOptimizer.class);
+
+	private JavaSparkContext sc;
+	private ParameterOptimizer optimizer;
+
+	public DistributedParameterOptimizer(JavaSparkContext sc, ParameterOptimizer optimizer) {
+		super();
+		this.sc = sc;
+		this.optimizer = optimizer;
+	}
+
+	public ParameterOptimizer getOptimizer() {
+		return optimizer;
+	}
+
+	public Map<String, TradingStrategy> optimize(Collection<Stock> stocks, DateInterval window) {
+		return optimize(stocks, Collections.singletonList(window)).get(0);
+	}
+
+	/**
+	 * Returns, for each informed window, the optimized strategy of every stock
+	 * that had a positive score on that window.
+	 */
+	public List<Map<String, TradingStrategy>> optimize(Collection<Stock> stocks, List<DateInterval> windows) {
+		Map<String, Stock> stocksByCode = new HashMap<>();
+		List<Tuple2<String, Integer>> units = new ArrayList<>();
+		for (Stock s : stocks) {
+			stocksByCode.put(s.getCode(), s);
+			for (int w = 0; w < windows.size(); w++) {
+				units.add(new Tuple2<>(s.getCode(), w));
+			}
+		}
+
+		ParameterOptimizer optimizer = this.optimizer;
+		ParameterGrid grid = optimizer.getGrid();
+		List<DateInterval> windowList = new ArrayList<>(windows);
+		Broadcast<Map<String, Stock>> broadcastStocks = sc.broadcast(stocksByCode);
+
+		log.info(String.format("Optimizing %s stocks over %s window(s) with grid %s", stocksByCode.size(),
+				windows.size(), grid));
+		// the metrics of the tasks come back with their results, so the ones
+		// of retried tasks are not counted twice
+		Map<Tuple2<String, Integer>, Tuple2<OptimizationResult, MetricValues>> evaluations;
+		if (optimizer.isBatchBacktestSupported()) {
+			evaluations = sc.parallelize(units).mapToPair(unit -> {
+				DateInterval window = windowList.get(unit._2());
+				return new Tuple2<>(unit, measure(unit._2(), grid.size(),
+						() -> optimizer.findBestParameters(broadcastStocks.value().get(unit._1()),
+								window.getInitialDate(), window.getFinalDate())));
+			}).collectAsMap();
+		} else {
+			evaluations = sc.parallelize(units).flatMapToPair(unit -> {
+				IndicatorCache.forStock(broadcastStocks.value().get(unit._1())).prefetch(grid);
+				List<Tuple2<Tuple2<String, Integer>, int[]>> combinations = new ArrayList<>(grid.size());
+				for (int entry = grid.getMinEntryDonchianSize(); entry <= grid.getMaxEntryDonchianSize(); entry++) {
+					for (int exit = grid.getMinExitDonchianSize(); exit <= grid.getMaxExitDonchianSize(); exit++) {
+						combinations.add(new Tuple2<>(unit, new int[] { entry, exit }));
+					}
+				}
+				return combinations;
+			}).mapToPair(c -> {
+				Stock stock = broadcastStocks.value().get(c._1()._1());
+				DateInterval window = windowList.get(c._1()._2());
+				return new Tuple2<>(c._1(), measure(c._1()._2(), 1, () -> {
+					OptimizationResult result = optimizer.evaluate(stock, c._2()[0], c._2()[1],
+							window.getInitialDate(), window.getFinalDate());
+					return result.getScore() > 0 ? result : null;
+				}));
+			}).reduceByKey(DistributedParameterOptimizer::best).collectAsMap();
+		}
+		broadcastStocks.unpersist();
+
+		Map<Tuple2<String, Integer>, OptimizationResult> bestResults = new HashMap<>();
+		for (Map.Entry<Tuple2<String, Integer>, Tuple2<OptimizationResult, MetricValues>> e : evaluations
+				.entrySet()) {
+			Metrics.merge(e.getValue()._2());
+			if (e.getValue()._1() != null) {
+				bestResults.put(e.getKey(), e.getValue()._1());
+			}
+		}
+
+		List<Map<String, TradingStrategy>> strategies = new ArrayList<>();
+		for (int w = 0; w < windows.size(); w++) {
+			strategies.add(new HashMap<>());
+		}
+		for (Map.Entry<Tuple2<String, Integer>, OptimizationResult> e : bestResults.entrySet()) {
+			String code = e.getKey()._1();
+			strategies.get(e.getKey()._2()).put(code,
+					optimizer.createStrategy(stocksByCode.get(code), e.getValue()));
+		}
+		return strategies;
+	}
+
+	/**
+	 * Runs the evaluation of grid combinations of a window on an executor,
+	 * returning its result along with the metrics it records, its time and the
+	 * executor throughput.
+	 */
+	private static <T> Tuple2<T, MetricValues> measure(int window, int combinations, Supplier<T> evaluation) {
+		MetricValues values = new MetricValues();
+		MetricValues previous = Metrics.bind(values);
+		long start = System.nanoTime();
+		T result;
+		try {
+			result = evaluation.get();
+		} finally {
+			Metrics.bind(previous);
+		}
+		long nanos = System.nanoTime() - start;
+		values.add(Counter.GRID_COMBINATIONS, combinations);
+		values.addTime(String.format("optimize.window.%03d", window), nanos);
+		values.addExecutorWork(SparkEnv.get().executorId(), combinations, nanos);
+		return new Tuple2<>(result, values);
+	}
+
+	/**
+	 * Keeps the best of the positive results, if any, with the metrics of both
+	 * evaluations.
+	 */
+	private static Tuple2<OptimizationResult, MetricValues> best(Tuple2<OptimizationResult, MetricValues> e1,
+			Tuple2<OptimizationResult, MetricValues> e2) {
+		OptimizationResult r1 = e1._1(), r2 = e2._1();
+		OptimizationResult best = r1 == null ? r2 : r2 == null ? r1 : OptimizationResult.best(r1, r2);
+		return new Tuple2<>(best, e1._2().merge(e2._2()));
+	}
+
+}
@@ -0,0 +1,152 @@
+package preti.spark.stock.system;
+
+import java.util.Arrays;
+
+import preti.spark.stock.model.PriceSeries;
+
+/**
+ * Rolling highest and lowest values of a series, computed with monotonic
+ * deques in a single O(n) pass that serves a whole range of window sizes at
+ * once. The window of each value ends at its own index and is truncated at the
+ * start of the series, as in ta4j's HighestValueIndicator and
+ * LowestValueIndicator.
+ */
+public class DonchianChannel {
+
+	private DonchianChannel() {
+	}
+
+	public static double[] highest(double[] values, int window) {
+		return highest(values, window, window)[0];
+	}
+
+	public static double[] lowest(double[] values, int window) {
+		return lowest(values, window, window)[0];
+	}
+
+	/**
+	 * Returns the rolling highest values for every window size from
+	 * minWindow to maxWindow, indexed by (window - minWindow).
+	 */
+	public static double[][] highest(double[] values, int minWindow, int maxWindow) {
+		return sweep(values, minWindow, maxWindow, true);
+	}
+
+	/**
+	 * Returns the rolling lowest values for every window size from minWindow
+	 * to maxWindow, indexed by (window - minWindow).
+	 */
+	public static double[][] lowest(double[] values, int minWindow, int maxWindow) {
+		return sweep(values, minWindow, maxWindow, false);
+	}
+
+	private static double[][] sweep(double[] values, int minWindow, int maxWindow, boolean highest) {
+		if (minWindow < 1 || minWindow > maxWindow) {
+			throw new IllegalArgumentException("Invalid window sizes: " + minWindow + " to " + maxWindow);
+		}
+
+		int windows = maxWindow - minWindow + 1;
+		double[][] result = new double[windows][values.length];
+		// One ring buffer of bar indexes per window size, whose values are
+		// kept monotonic from head to tail
+		int[][] deques = new int[windows][];
+		int[] heads = new int[windows];
+		int[] sizes = new int[windows];
+		for (int k = 0; k < windows; k++) {
+			deques[k] = new int[minWindow + k];
+		}
+
+		for (int i = 0; i < values.length; i++) {
+			double value = values[i];
+			for (int k = 0; k < windows; k++) {
+				int[] deque = deques[k];
+				int window = deque.length;
+
+				if (sizes[k] > 0 && deque[heads[k]] <= i - window) {
+					heads[k] = (heads[k] + 1) % window;
+					sizes[k]--;
+				}
+				while (sizes[k] > 0) {
+					double last = values[deque[(heads[k] + sizes[k] - 1) % window]];
+					if (highest ? last > value : last < value) {
+						break;
+					}
+					sizes[k]--;
+				}
+				deque[(heads[k] + sizes[k]) % window] = i;
+				sizes[k]++;
+
+				result[k][i] = values[deque[heads[k]]];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Channel of a single window over the highs or lows of a price series,
+	 * moved forward as bars are appended to it. Its monotonic deque is kept
+	 * between calls, so each new bar costs constant amortized time whatever
+	 * the length of the history.
+	 */
+	static class Rolling {
+		private PriceSeries series;
+		private boolean highest;
+		private int[] deque;
+		private int head, count;
+		private double[] values;
+		private int size;
+
+		/**
+		 * Continues the channel whose values for the first bars are informed.
+		 * The array is used as it is, and written past those bars.
+		 */
+		Rolling(PriceSeries series, int window, boolean highest, double[] values, int size) {
+			this.series = series;
+			this.highest = highest;
+			this.deque = new int[window];
+			this.values = values;
+			this.size = size;
+			for (int i = Math.max(size - window, 0); i < size; i++) {
+				push(i);
+			}
+		}
+
+		/**
+		 * Returns the channel values, valid for the first bars of the series,
+		 * computing those after the last ones returned.
+		 */
+		double[] extendTo(int bars) {
+			if (values.length < bars) {
+				values = Arrays.copyOf(values, Math.max(bars, values.length + (values.length >> 1)));
+			}
+			for (; size < bars; size++) {
+				push(size);
+				values[size] = value(deque[head]);
+			}
+			return values;
+		}
+
+		private void push(int i) {
+			int window = deque.length;
+			if (count > 0 && deque[head] <= i - window) {
+				head = (head + 1) % window;
+				count--;
+			}
+			double value = value(i);
+			while (count > 0) {
+				double last = value(deque[(head + count - 1) % window]);
+				if (highest ? last > value : last < value) {
+					break;
+				}
+				count--;
+			}
+			deque[(head + count) % window] = i;
+			count++;
+		}
+
+		private double value(int i) {
+			return highest ? series.getHigh(i) : series.getLow(i);
+		}
+	}
+
+}
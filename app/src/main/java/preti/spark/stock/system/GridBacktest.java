@@ -0,0 +1,161 @@
+package preti.spark.stock.system;
+
+import java.util.Date;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Backtests all the parameter combinations of a grid on a single stock in one
+ * pass over its bars. The signals of each window size are evaluated once per
+ * bar and the position, stop and balance of every combination are stepped
+ * forward together, kept in primitive arrays. The final balances are the ones
+ * of a {@link TradeSystem} running a {@link TradingStrategyImpl} per
+ * combination followed by a call to closeAllOpenTrades at the final date.
+ */
+public class GridBacktest {
+
+	private GridBacktest() {
+	}
+
+	/**
+	 * Returns the final balance of each combination, indexed by
+	 * (entrySize - minEntrySize) * exitSizes + (exitSize - minExitSize).
+	 */
+	public static double[] run(Stock stock, ParameterGrid grid, double accountInitialPosition, Date initialDate,
+			Date finalDate) {
+		PriceSeries series = stock.getSeries();
+		IndicatorCache indicators = IndicatorCache.forStock(stock);
+		indicators.prefetch(grid);
+
+		int minEntry = grid.getMinEntryDonchianSize();
+		int minExit = grid.getMinExitDonchianSize();
+		int entries = grid.getMaxEntryDonchianSize() - minEntry + 1;
+		int exits = grid.getMaxExitDonchianSize() - minExit + 1;
+		double[][] highest = new double[entries][];
+		for (int e = 0; e < entries; e++) {
+			highest[e] = indicators.getHighestValues(minEntry + e);
+		}
+		double[][] lowest = new double[exits][];
+		for (int x = 0; x < exits; x++) {
+			lowest[x] = indicators.getLowestValues(minExit + x);
+		}
+
+		int combinations = entries * exits;
+		double[] balance = new double[combinations];
+		boolean[] open = new boolean[combinations];
+		double[] size = new double[combinations];
+		double[] stopPos = new double[combinations];
+		double[] buyValue = new double[combinations];
+		for (int c = 0; c < combinations; c++) {
+			balance[c] = accountInitialPosition;
+		}
+
+		boolean[] entrySignal = new boolean[entries];
+		boolean[] exitSignal = new boolean[exits];
+		double risk = accountInitialPosition * TradingStrategyImpl.RISK_FACTOR;
+		int firstBar = firstBarIndex(series, initialDate);
+		int lastBar = lastBarIndex(series, finalDate);
+		long entrySignals = 0, tradesOpened = 0, tradesClosed = 0;
+		for (int i = firstBar; i <= lastBar; i++) {
+			double close = series.getClose(i);
+			boolean liquid = series.getVolume(i) >= TradingStrategyImpl.MINIMUM_VOLUME;
+			for (int e = 0; e < entries; e++) {
+				entrySignal[e] = liquid && i > minEntry + e && close > highest[e][i - 1];
+			}
+			for (int x = 0; x < exits; x++) {
+				exitSignal[x] = i > minExit + x && close <= lowest[x][i - 1];
+			}
+
+			for (int e = 0, c = 0; e < entries; e++) {
+				for (int x = 0; x < exits; x++, c++) {
+					if (open[c]) {
+						boolean profitable = close - buyValue[c] > 0;
+						if (profitable ? exitSignal[x] : close <= stopPos[c]) {
+							balance[c] += size[c] * close;
+							open[c] = false;
+							tradesClosed++;
+						}
+					} else if (entrySignal[e]) {
+						entrySignals++;
+						double stopLoss = lowest[x][i - 1];
+						double positionSize = Math.floor(risk / (close - stopLoss));
+						if (positionSize < 1) {
+							continue;
+						}
+						positionSize = TradeSystem.fitToBalance(positionSize, close, balance[c]);
+
+						open[c] = true;
+						size[c] = positionSize;
+						stopPos[c] = stopLoss;
+						buyValue[c] = close;
+						balance[c] -= positionSize * close;
+						tradesOpened++;
+					}
+				}
+			}
+		}
+
+		long exitSignals = tradesClosed;
+		for (int c = 0; c < combinations; c++) {
+			if (open[c]) {
+				balance[c] += size[c] * stock.getCloseValueAtDate(finalDate);
+				tradesClosed++;
+			}
+		}
+
+		// each bar is evaluated once by every combination
+		Metrics.add(Counter.GRID_BAR_EVALUATIONS, (long) Math.max(lastBar - firstBar + 1, 0) * combinations);
+		Metrics.add(Counter.ENTRY_SIGNALS, entrySignals);
+		Metrics.add(Counter.EXIT_SIGNALS, exitSignals);
+		Metrics.add(Counter.TRADES_OPENED, tradesOpened);
+		Metrics.add(Counter.TRADES_CLOSED, tradesClosed);
+		return balance;
+	}
+
+	/**
+	 * Returns the combination with the highest positive net gain, or null if
+	 * there is none. Ties go to the first combination in grid order.
+	 */
+	public static OptimizationResult findBest(Stock stock, ParameterGrid grid, double accountInitialPosition,
+			Date initialDate, Date finalDate) {
+		double[] balances = run(stock, grid, accountInitialPosition, initialDate, finalDate);
+		int exits = grid.getMaxExitDonchianSize() - grid.getMinExitDonchianSize() + 1;
+
+		OptimizationResult best = null;
+		for (int c = 0; c < balances.length; c++) {
+			double gain = balances[c] - accountInitialPosition;
+			if (gain > (best == null ? 0 : best.getScore())) {
+				best = new OptimizationResult(grid.getMinEntryDonchianSize() + c / exits,
+						grid.getMinExitDonchianSize() + c % exits, gain);
+			}
+		}
+		return best;
+	}
+
+	private static int firstBarIndex(PriceSeries series, Date initialDate) {
+		if (initialDate == null) {
+			return 0;
+		}
+		int i = series.countBefore(EpochDays.fromDate(initialDate));
+		if (i < series.size() && EpochDays.toMillis(series.getDate(i)) < initialDate.getTime()) {
+			i++;
+		}
+		return i;
+	}
+
+	private static int lastBarIndex(PriceSeries series, Date finalDate) {
+		if (finalDate == null) {
+			return series.size() - 1;
+		}
+		int i = series.floorIndex(EpochDays.fromDate(finalDate));
+		if (i >= 0 && EpochDays.toMillis(series.getDate(i)) > finalDate.getTime()) {
+			i--;
+		}
+		return i;
+	}
+
+}
@@ -0,0 +1,125 @@
+package preti.spark.stock.system;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Shares the Donchian channels of a stock among all of its strategies, keyed by
+ * window size. Channels are computed by {@link DonchianChannel}. A channel is
+ * moved forward to the bars appended to the history when it is requested
+ * again, only that window being updated, in place when its array has room, so
+ * the arrays may be longer than the history and the same array may be
+ * returned to several threads: only the values of the bars the series had at
+ * the request are valid, and those are never modified afterwards, while a
+ * later request may write the values past them. Both the stocks and the
+ * windows of each stock are kept in LRU order and the eldest are evicted; a
+ * stock's channels are dropped when its existing bars change.
+ */
+public class IndicatorCache {
+	private static final int MAX_CACHED_STOCKS = 128;
+	private static final int MAX_CACHED_WINDOWS = 32;
+
+	private static final Map<Stock, IndicatorCache> caches = new LruMap<>(MAX_CACHED_STOCKS);
+
+	private PriceSeries series;
+	private int rewriteCount;
+	private Map<Integer, DonchianChannel.Rolling> highestValues = new LruMap<>(MAX_CACHED_WINDOWS);
+	private Map<Integer, DonchianChannel.Rolling> lowestValues = new LruMap<>(MAX_CACHED_WINDOWS);
+
+	private IndicatorCache(Stock stock) {
+		this.series = stock.getSeries();
+		this.rewriteCount = series.getRewriteCount();
+	}
+
+	public static IndicatorCache forStock(Stock stock) {
+		synchronized (caches) {
+			IndicatorCache cache = caches.get(stock);
+			if (cache == null || cache.rewriteCount != stock.getSeries().getRewriteCount()) {
+				cache = new IndicatorCache(stock);
+				caches.put(stock, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Rolling highest high of the informed window size, indexed by bar, valid
+	 * for the bars the series has at the call.
+	 */
+	public synchronized double[] getHighestValues(int window) {
+		return getValues(highestValues, window, true);
+	}
+
+	/**
+	 * Rolling lowest low of the informed window size, indexed by bar, valid
+	 * for the bars the series has at the call.
+	 */
+	public synchronized double[] getLowestValues(int window) {
+		return getValues(lowestValues, window, false);
+	}
+
+	private double[] getValues(Map<Integer, DonchianChannel.Rolling> cache, int window, boolean highest) {
+		DonchianChannel.Rolling channel = cache.get(window);
+		if (channel == null) {
+			double[] values = highest ? DonchianChannel.highest(series.getHighs(), window)
+					: DonchianChannel.lowest(series.getLows(), window);
+			channel = new DonchianChannel.Rolling(series, window, highest, values, values.length);
+			cache.put(window, channel);
+			Metrics.increment(Counter.INDICATOR_CACHE_MISSES);
+		} else {
+			Metrics.increment(Counter.INDICATOR_CACHE_HITS);
+		}
+		return channel.extendTo(series.size());
+	}
+
+	/**
+	 * Computes, in one sweep each for highs and lows, all the channels needed
+	 * by the informed grid that are not cached yet.
+	 */
+	public synchronized void prefetch(ParameterGrid grid) {
+		prefetch(highestValues, grid.getMinEntryDonchianSize(), grid.getMaxEntryDonchianSize(), true);
+		prefetch(lowestValues, grid.getMinExitDonchianSize(), grid.getMaxExitDonchianSize(), false);
+	}
+
+	private void prefetch(Map<Integer, DonchianChannel.Rolling> cache, int minWindow, int maxWindow,
+			boolean highest) {
+		boolean missing = false;
+		for (int w = minWindow; w <= maxWindow && !missing; w++) {
+			missing = !cache.containsKey(w);
+		}
+		if (!missing) {
+			return;
+		}
+
+		double[][] values = highest ? DonchianChannel.highest(series.getHighs(), minWindow, maxWindow)
+				: DonchianChannel.lowest(series.getLows(), minWindow, maxWindow);
+		for (int w = minWindow; w <= maxWindow; w++) {
+			if (!cache.containsKey(w)) {
+				double[] windowValues = values[w - minWindow];
+				cache.put(w, new DonchianChannel.Rolling(series, w, highest, windowValues, windowValues.length));
+				Metrics.increment(Counter.INDICATOR_CACHE_MISSES);
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private int maxSize;
+
+		LruMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package preti.spark.stock.system;
+
+import java.io.Serializable;
+
+/**
+ * Scores the outcome of a backtest. Higher scores are better; only positive
+ * scores are eligible to be selected by the optimizers.
+ */
+public interface OptimizationObjective extends Serializable {
+
+	OptimizationObjective NET_GAIN = Standard.NET_GAIN;
+
+	double evaluate(TradeSystem system);
+
+	/*
+	 * Enum constants keep their identity when serialized to the executors.
+	 */
+	enum Standard implements OptimizationObjective {
+		NET_GAIN {
+			@Override
+			public double evaluate(TradeSystem system) {
+				return system.getAccountBalance() - system.getAccountInitialPosition();
+			}
+		}
+	}
+
+}
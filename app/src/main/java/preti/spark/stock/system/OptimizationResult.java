@@ -0,0 +1,49 @@
+package preti.spark.stock.system;
+
+import java.io.Serializable;
+
+@SuppressWarnings("serial")
+public class OptimizationResult implements Serializable {
+	private int entryDonchianSize, exitDonchianSize;
+	private double score;
+
+	public OptimizationResult(int entryDonchianSize, int exitDonchianSize, double score) {
+		super();
+		this.entryDonchianSize = entryDonchianSize;
+		this.exitDonchianSize = exitDonchianSize;
+		this.score = score;
+	}
+
+	public int getEntryDonchianSize() {
+		return entryDonchianSize;
+	}
+
+	public int getExitDonchianSize() {
+		return exitDonchianSize;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Picks the best of two results. Ties go to the smallest entry size and
+	 * then to the smallest exit size, which is the first one found by the
+	 * sequential grid search.
+	 */
+	public static OptimizationResult best(OptimizationResult r1, OptimizationResult r2) {
+		if (r1.score != r2.score) {
+			return r1.score > r2.score ? r1 : r2;
+		}
+		if (r1.entryDonchianSize != r2.entryDonchianSize) {
+			return r1.entryDonchianSize < r2.entryDonchianSize ? r1 : r2;
+		}
+		return r1.exitDonchianSize <= r2.exitDonchianSize ? r1 : r2;
+	}
+
+	public String toString() {
+		return String.format("entryDonchianSize=%s exitDonchianSize=%s score=%s", entryDonchianSize,
+				exitDonchianSize, score);
+	}
+
+}
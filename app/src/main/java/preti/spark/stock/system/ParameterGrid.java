@@ -0,0 +1,50 @@
+package preti.spark.stock.system;
+
+import java.io.Serializable;
+
+@SuppressWarnings("serial")
+public class ParameterGrid implements Serializable {
+	public static final ParameterGrid DEFAULT = new ParameterGrid(10, 20, 2, 10);
+
+	private int minEntryDonchianSize, maxEntryDonchianSize;
+	private int minExitDonchianSize, maxExitDonchianSize;
+
+	public ParameterGrid(int minEntryDonchianSize, int maxEntryDonchianSize, int minExitDonchianSize,
+			int maxExitDonchianSize) {
+		super();
+		if (minEntryDonchianSize < 1 || minExitDonchianSize < 1 || minEntryDonchianSize > maxEntryDonchianSize
+				|| minExitDonchianSize > maxExitDonchianSize) {
+			throw new IllegalArgumentException("Invalid parameter grid bounds.");
+		}
+		this.minEntryDonchianSize = minEntryDonchianSize;
+		this.maxEntryDonchianSize = maxEntryDonchianSize;
+		this.minExitDonchianSize = minExitDonchianSize;
+		this.maxExitDonchianSize = maxExitDonchianSize;
+	}
+
+	public int getMinEntryDonchianSize() {
+		return minEntryDonchianSize;
+	}
+
+	public int getMaxEntryDonchianSize() {
+		return maxEntryDonchianSize;
+	}
+
+	public int getMinExitDonchianSize() {
+		return minExitDonchianSize;
+	}
+
+	public int getMaxExitDonchianSize() {
+		return maxExitDonchianSize;
+	}
+
+	public int size() {
+		return (maxEntryDonchianSize - minEntryDonchianSize + 1) * (maxExitDonchianSize - minExitDonchianSize + 1);
+	}
+
+	public String toString() {
+		return String.format("entry=[%s,%s] exit=[%s,%s]", minEntryDonchianSize, maxEntryDonchianSize,
+				minExitDonchianSize, maxExitDonchianSize);
+	}
+
+}
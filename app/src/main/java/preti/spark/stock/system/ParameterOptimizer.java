@@ -0,0 +1,100 @@
+package preti.spark.stock.system;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import preti.spark.stock.model.Stock;
+
+/**
+ * Searches the Donchian channel sizes of {@link TradingStrategyImpl} that give
+ * the best score for a stock over a training period.
+ */
+@SuppressWarnings("serial")
+public class ParameterOptimizer implements Serializable {
+	private ParameterGrid grid;
+	private OptimizationObjective objective;
+	private double accountInitialPosition;
+
+	public ParameterOptimizer(double accountInitialPosition) {
+		this(ParameterGrid.DEFAULT, OptimizationObjective.NET_GAIN, accountInitialPosition);
+	}
+
+	public ParameterOptimizer(ParameterGrid grid, OptimizationObjective objective, double accountInitialPosition) {
+		super();
+		this.grid = grid;
+		this.objective = objective;
+		this.accountInitialPosition = accountInitialPosition;
+	}
+
+	public ParameterGrid getGrid() {
+		return grid;
+	}
+
+	public OptimizationObjective getObjective() {
+		return objective;
+	}
+
+	public double getAccountInitialPosition() {
+		return accountInitialPosition;
+	}
+
+	public OptimizationResult evaluate(Stock stock, int entryDonchianSize, int exitDonchianSize, Date initialDate,
+			Date finalDate) {
+		TradingStrategy strategy = new TradingStrategyImpl(stock, entryDonchianSize, exitDonchianSize,
+				accountInitialPosition);
+		TradeSystem system = new TradeSystem(stock, accountInitialPosition, strategy);
+		system.analyzeStocks(initialDate, finalDate);
+		system.closeAllOpenTrades(finalDate);
+
+		return new OptimizationResult(entryDonchianSize, exitDonchianSize, objective.evaluate(system));
+	}
+
+	/**
+	 * Tells whether the objective can be computed by {@link GridBacktest},
+	 * which only knows the final balances: true for
+	 * {@link OptimizationObjective#NET_GAIN}.
+	 */
+	public boolean isBatchBacktestSupported() {
+		return objective == OptimizationObjective.NET_GAIN;
+	}
+
+	/**
+	 * Runs the whole grid and returns the best result, or null if no parameter
+	 * set has a positive score. The grid is evaluated in one pass by
+	 * {@link GridBacktest} when the objective allows it.
+	 */
+	public OptimizationResult findBestParameters(Stock stock, Date initialDate, Date finalDate) {
+		if (isBatchBacktestSupported()) {
+			return GridBacktest.findBest(stock, grid, accountInitialPosition, initialDate, finalDate);
+		}
+
+		IndicatorCache.forStock(stock).prefetch(grid);
+
+		OptimizationResult best = null;
+		for (int entryDonchianSize = grid.getMinEntryDonchianSize(); entryDonchianSize <= grid
+				.getMaxEntryDonchianSize(); entryDonchianSize++) {
+			for (int exitDonchianSize = grid.getMinExitDonchianSize(); exitDonchianSize <= grid
+					.getMaxExitDonchianSize(); exitDonchianSize++) {
+				OptimizationResult result = evaluate(stock, entryDonchianSize, exitDonchianSize, initialDate,
+						finalDate);
+				if (result.getScore() > (best == null ? 0 : best.getScore())) {
+					best = result;
+				}
+			}
+		}
+		return best;
+	}
+
+	public TradingStrategy optimize(Stock stock, Date initialDate, Date finalDate) {
+		return createStrategy(stock, findBestParameters(stock, initialDate, finalDate));
+	}
+
+	public TradingStrategy createStrategy(Stock stock, OptimizationResult result) {
+		if (result == null) {
+			return null;
+		}
+		return new TradingStrategyImpl(stock, result.getEntryDonchianSize(), result.getExitDonchianSize(),
+				accountInitialPosition);
+	}
+
+}
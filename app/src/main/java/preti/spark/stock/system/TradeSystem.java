@@ -0,0 +1,483 @@
+package preti.spark.stock.system;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockTrade;
+import preti.spark.stock.model.Trade;
+
+@SuppressWarnings("serial")
+public class TradeSystem implements Serializable {
+	private static final Log log = LogFactory.getLog(TradeSystem.class);
+
+	// sell date of the open trades in the written state
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	// stock trades by code, in the order the stocks were informed, and the
+	// ones in open position, in the order they were opened
+	private Map<String, StockTrade> wallet;
+	private Set<StockTrade> openStockTrades;
+	private double accountInitialPosition;
+	private double accountBalance;
+	private TreeMap<Date, Double> balanceHistory;
+
+	// cash plus open positions marked at the last close seen for each stock,
+	// updated as held stocks get new bars and trades open or close
+	private Map<Date, Double> equityHistory;
+	// sum of the marked values of the open stock trades
+	private double openPositionsValue;
+
+	private Map<String, TradingStrategy> tradingStrategies;
+
+	// trading days of the wallet stocks, with calendarTrades[i] holding the
+	// stock i of the calendar
+	private transient TradingCalendar calendar;
+	private transient StockTrade[] calendarTrades;
+	// position of each stock trade in the wallet, for the daily advances
+	private transient Map<StockTrade, Integer> walletPositions;
+
+	public TradeSystem(Stock stock, double accountInitialPosition, TradingStrategy strategy) {
+		this(Arrays.asList(stock), accountInitialPosition, null);
+		this.tradingStrategies = new HashMap<>();
+		tradingStrategies.put(stock.getCode(), strategy);
+	}
+
+	public TradeSystem(Collection<Stock> stocks, double accountInitialPosition,
+			Map<String, TradingStrategy> tradingStrategies) {
+		this.accountInitialPosition = accountInitialPosition;
+		this.accountBalance = accountInitialPosition;
+
+		if (stocks == null || stocks.isEmpty()) {
+			throw new IllegalArgumentException("No stocks to analyze.");
+		}
+
+		wallet = new LinkedHashMap<>();
+		for (Stock s : stocks) {
+			if (wallet.put(s.getCode(), new StockTrade(s)) != null) {
+				throw new IllegalArgumentException("Duplicated stock " + s.getCode());
+			}
+		}
+		openStockTrades = new LinkedHashSet<>();
+
+		balanceHistory = new TreeMap<>();
+		equityHistory = new TreeMap<>();
+		this.tradingStrategies = tradingStrategies;
+	}
+
+	public Map<Date, Double> getBalanceHistory() {
+		return balanceHistory;
+	}
+
+	/**
+	 * Returns the account equity by date: the balance plus the open positions
+	 * valued at their last close.
+	 */
+	public Map<Date, Double> getEquityHistory() {
+		return equityHistory;
+	}
+
+	/**
+	 * Returns the last date with a recorded balance, or null if none.
+	 */
+	public Date getLastAnalyzedDate() {
+		return balanceHistory.isEmpty() ? null : balanceHistory.lastKey();
+	}
+
+	public double getEquity() {
+		return accountBalance + openPositionsValue;
+	}
+
+	public Collection<StockTrade> getWallet() {
+		return Collections.unmodifiableCollection(wallet.values());
+	}
+
+	public StockTrade getStockTrade(String stockCode) {
+		return wallet.get(stockCode);
+	}
+
+	/**
+	 * Returns the stock trades currently in open position, in the order they
+	 * were opened.
+	 */
+	public Collection<StockTrade> getOpenStockTrades() {
+		return Collections.unmodifiableCollection(openStockTrades);
+	}
+
+	public List<Stock> getStocks() {
+		List<Stock> stocks = new ArrayList<>();
+		for (StockTrade st : wallet.values()) {
+			stocks.add(st.getStock());
+		}
+		return stocks;
+	}
+
+	public Map<String, TradingStrategy> getTradingStrategies() {
+		return tradingStrategies;
+	}
+
+	public void setTradingStrategies(Map<String, TradingStrategy> strategies) {
+		this.tradingStrategies = strategies;
+	}
+
+	public void applyTradingStrategy(String stockCode, TradingStrategy strategy) {
+		this.tradingStrategies.put(stockCode, strategy);
+	}
+
+	private boolean openNewTrade(StockTrade stockTrade, Date d, int barIndex) {
+		TradingStrategy strategy = this.tradingStrategies.get(stockTrade.getStock().getCode());
+		double size = strategy.calculatePositionSize(barIndex);
+		if (size < 1) {
+			if (log.isDebugEnabled()) {
+				log.debug("Postion size<1: not enough balance to enter position");
+			}
+			return false;
+		}
+
+		double stockValue = stockTrade.getStock().getSeries().getClose(barIndex);
+		size = fitToBalance(size, stockValue, this.accountBalance);
+		if (size < 1) {
+			if (log.isDebugEnabled()) {
+				log.debug("Not enough balance to enter position");
+			}
+			return false;
+		}
+
+		Trade t = stockTrade.openNewTrade(size, d, strategy.calculateStopLossPoint(barIndex));
+		openStockTrades.add(stockTrade);
+		Metrics.increment(Counter.TRADES_OPENED);
+		if (log.isDebugEnabled()) {
+			log.debug("Opening new trade: " + t);
+		}
+		this.accountBalance -= t.getSize() * t.getBuyValue();
+		return true;
+	}
+
+	/**
+	 * Decreases the position size one unit at a time until it fits the
+	 * balance, or down to 1. The decrements start right above the largest size
+	 * the balance can afford, which gives the same size as starting from the
+	 * top.
+	 */
+	static double fitToBalance(double size, double stockValue, double balance) {
+		if ((size * stockValue) > balance && size > 1) {
+			double affordable = Math.max(Math.floor(balance / stockValue) + 1, 1);
+			if (affordable < size) {
+				size = affordable;
+			}
+		}
+		while ((size * stockValue) > balance && size > 1) {
+			size--;
+		}
+		return size;
+	}
+
+	private void closeLastTrade(StockTrade stockTrade, Date d) {
+		Trade t = stockTrade.closeLastTrade(d);
+		openStockTrades.remove(stockTrade);
+		this.accountBalance += t.getSize() * t.getSellValue();
+		Metrics.increment(Counter.TRADES_CLOSED);
+		if (log.isDebugEnabled()) {
+			log.debug("Closing trade " + t);
+		}
+	}
+
+	/**
+	 * Marks the open position of the stock, if any, at the close of the bar.
+	 */
+	private void markPosition(StockTrade stockTrade, int barIndex) {
+		if (stockTrade.isInOpenPosition()) {
+			double value = stockTrade.getLastTrade().getSize() * stockTrade.getStock().getSeries().getClose(barIndex);
+			openPositionsValue += value - stockTrade.getMarkedValue();
+			stockTrade.setMarkedValue(value);
+		} else if (stockTrade.getMarkedValue() != 0) {
+			openPositionsValue -= stockTrade.getMarkedValue();
+			stockTrade.setMarkedValue(0);
+		}
+	}
+
+	private void recordBalance(Date d) {
+		if (openStockTrades.isEmpty()) {
+			// avoids carrying rounding errors of the running total
+			openPositionsValue = 0;
+		}
+		balanceHistory.put(d, this.accountBalance);
+		equityHistory.put(d, getEquity());
+	}
+
+	public double getAccountInitialPosition() {
+		return accountInitialPosition;
+	}
+
+	public double getAccountBalance() {
+		return accountBalance;
+	}
+
+	/**
+	 * Runs the strategies over the trading days between the dates, both
+	 * inclusive, visiting on each day only the stocks with a bar on it. Open
+	 * positions are marked as their stocks get new bars, so recording the
+	 * daily equity costs only the positions that changed.
+	 */
+	public void analyzeStocks(Date initialDate, Date finalDate) {
+		TradingCalendar calendar = getCalendar();
+		// counted locally and recorded once, off the per-bar path
+		BarCounts counts = new BarCounts();
+		int lastDay = calendar.lastDayIndex(finalDate);
+		for (int day = calendar.firstDayIndex(initialDate); day <= lastDay; day++) {
+			Date date = EpochDays.toDate(calendar.getDay(day));
+			for (int e = calendar.getFirstEvent(day); e < calendar.getEndEvent(day); e++) {
+				evaluateBar(calendarTrades[calendar.getEventStock(e)], date, calendar.getEventBar(e), counts);
+			}
+			recordBalance(date);
+		}
+		counts.record();
+	}
+
+	/**
+	 * Runs the strategies on a single trading day after the last one analyzed,
+	 * visiting only the informed stocks, which must have a bar on it, in the
+	 * same order {@link #analyzeStocks(Date, Date)} would. Stocks without a bar
+	 * keep their positions marked at their last close, so the cost is
+	 * proportional to the number of stocks informed, not to the history.
+	 */
+	public void advance(Date date, Collection<String> stockCodes) {
+		if (!balanceHistory.isEmpty() && !date.after(balanceHistory.lastKey())) {
+			throw new IllegalArgumentException(
+					"Date " + date + " is not after the last analyzed date " + balanceHistory.lastKey());
+		}
+		if (walletPositions == null) {
+			walletPositions = new HashMap<>();
+			for (StockTrade st : wallet.values()) {
+				walletPositions.put(st, walletPositions.size());
+			}
+		}
+
+		List<StockTrade> stockTrades = new ArrayList<>();
+		for (String code : stockCodes) {
+			StockTrade stockTrade = wallet.get(code);
+			if (stockTrade == null) {
+				throw new IllegalArgumentException("Stock " + code + " is not in the wallet");
+			}
+			stockTrades.add(stockTrade);
+		}
+		stockTrades.sort((a, b) -> Integer.compare(walletPositions.get(a), walletPositions.get(b)));
+
+		int epochDay = EpochDays.fromDate(date);
+		BarCounts counts = new BarCounts();
+		for (StockTrade stockTrade : stockTrades) {
+			int barIndex = stockTrade.getStock().getSeries().indexOf(epochDay);
+			if (barIndex < 0) {
+				throw new IllegalArgumentException("No bar of " + stockTrade.getStock().getCode() + " at " + date);
+			}
+			evaluateBar(stockTrade, date, barIndex, counts);
+		}
+		recordBalance(date);
+		counts.record();
+	}
+
+	/**
+	 * Runs the strategy of the stock, if any, on the bar and marks its
+	 * position, adding the evaluated bar and signals to the counts.
+	 */
+	private void evaluateBar(StockTrade stockTrade, Date date, int barIndex, BarCounts counts) {
+		TradingStrategy strategy = this.tradingStrategies.get(stockTrade.getStock().getCode());
+		if (strategy != null) {
+			counts.bars++;
+			if (stockTrade.isInOpenPosition()) {
+				boolean profittable = stockTrade.isProfittable(date);
+				if ((profittable && strategy.exitPosition(barIndex))
+						|| (!profittable && stockTrade.hasReachedStopPosition(date))) {
+					counts.exitSignals++;
+					closeLastTrade(stockTrade, date);
+				}
+
+			} else {
+				if (strategy.enterPosition(barIndex)) {
+					counts.entrySignals++;
+					openNewTrade(stockTrade, date, barIndex);
+				}
+			}
+		}
+		markPosition(stockTrade, barIndex);
+	}
+
+	private static class BarCounts {
+		long bars, entrySignals, exitSignals;
+
+		void record() {
+			Metrics.add(Counter.BARS_EVALUATED, bars);
+			Metrics.add(Counter.ENTRY_SIGNALS, entrySignals);
+			Metrics.add(Counter.EXIT_SIGNALS, exitSignals);
+		}
+	}
+
+	/**
+	 * Returns the calendar of the wallet stocks, rebuilding it when any of
+	 * their histories has changed.
+	 */
+	private TradingCalendar getCalendar() {
+		List<Stock> stocks = getStocks();
+		if (calendar == null || !calendar.isUpToDate(stocks)) {
+			calendar = new TradingCalendar(stocks);
+			calendarTrades = wallet.values().toArray(new StockTrade[wallet.size()]);
+		}
+		return calendar;
+	}
+
+	public void closeAllOpenTrades(Date d) {
+		for (StockTrade st : new ArrayList<>(openStockTrades)) {
+			this.closeLastTrade(st, d);
+			st.setMarkedValue(0);
+		}
+		recordBalance(d);
+	}
+
+	/**
+	 * Writes the state of the system for {@link #readState(DataInput, Map)}:
+	 * the stocks as their codes, the trades as their sizes, stops and dates,
+	 * and the strategies as their parameters.
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeDouble(accountInitialPosition);
+		out.writeDouble(accountBalance);
+		out.writeInt(wallet.size());
+		for (StockTrade st : wallet.values()) {
+			out.writeUTF(st.getStock().getCode());
+			out.writeInt(st.getTrades().size());
+			for (Trade t : st.getTrades()) {
+				out.writeDouble(t.getSize());
+				out.writeDouble(t.getStopPos());
+				out.writeLong(t.getBuyDate().getTime());
+				out.writeLong(t.isOpen() ? NO_DATE : t.getSellDate().getTime());
+			}
+		}
+		out.writeInt(openStockTrades.size());
+		for (StockTrade st : openStockTrades) {
+			out.writeUTF(st.getStock().getCode());
+			out.writeDouble(st.getMarkedValue());
+		}
+		out.writeDouble(openPositionsValue);
+		out.writeInt(balanceHistory.size());
+		for (Map.Entry<Date, Double> e : balanceHistory.entrySet()) {
+			out.writeLong(e.getKey().getTime());
+			out.writeDouble(e.getValue());
+			out.writeDouble(equityHistory.get(e.getKey()));
+		}
+
+		if (tradingStrategies == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(tradingStrategies.size());
+		for (Map.Entry<String, TradingStrategy> e : tradingStrategies.entrySet()) {
+			if (!(e.getValue() instanceof TradingStrategyImpl)) {
+				throw new IllegalArgumentException("Can't write the strategy of " + e.getKey() + ": "
+						+ e.getValue() + " has no known parameters.");
+			}
+			TradingStrategyImpl strategy = (TradingStrategyImpl) e.getValue();
+			out.writeUTF(e.getKey());
+			out.writeInt(strategy.getEntryDonchianSize());
+			out.writeInt(strategy.getExitDonchianSize());
+			out.writeDouble(strategy.getAccountInitialPosition());
+		}
+	}
+
+	/**
+	 * Reads a system written by {@link #writeState(DataOutput)}, over the
+	 * informed stocks by code, which must be the same stocks of the written
+	 * system, with at least the history it had.
+	 */
+	static TradeSystem readState(DataInput in, Map<String, Stock> stocks) throws IOException {
+		double accountInitialPosition = in.readDouble();
+		double accountBalance = in.readDouble();
+		int walletSize = in.readInt();
+		if (walletSize != stocks.size()) {
+			throw new IllegalArgumentException(
+					String.format("The system had %s stocks, but %s were informed.", walletSize, stocks.size()));
+		}
+		Map<String, StockTrade> wallet = new LinkedHashMap<>();
+		for (int i = 0; i < walletSize; i++) {
+			String code = in.readUTF();
+			Stock stock = stocks.get(code);
+			if (stock == null) {
+				throw new IllegalArgumentException("Stock " + code + " of the system was not informed.");
+			}
+			StockTrade stockTrade = new StockTrade(stock);
+			int trades = in.readInt();
+			for (int t = 0; t < trades; t++) {
+				double size = in.readDouble();
+				double stopPos = in.readDouble();
+				Date buyDate = new Date(in.readLong());
+				long sellDate = in.readLong();
+				stockTrade.openNewTrade(size, buyDate, stopPos);
+				if (sellDate != NO_DATE) {
+					stockTrade.closeLastTrade(new Date(sellDate));
+				}
+			}
+			wallet.put(code, stockTrade);
+		}
+
+		List<Stock> walletStocks = new ArrayList<>();
+		for (StockTrade st : wallet.values()) {
+			walletStocks.add(st.getStock());
+		}
+		TradeSystem system = new TradeSystem(walletStocks, accountInitialPosition, null);
+		system.wallet = wallet;
+		system.accountBalance = accountBalance;
+		int openTrades = in.readInt();
+		for (int i = 0; i < openTrades; i++) {
+			StockTrade stockTrade = readWalletStock(in, wallet);
+			stockTrade.setMarkedValue(in.readDouble());
+			system.openStockTrades.add(stockTrade);
+		}
+		system.openPositionsValue = in.readDouble();
+		int balances = in.readInt();
+		for (int i = 0; i < balances; i++) {
+			Date date = new Date(in.readLong());
+			system.balanceHistory.put(date, in.readDouble());
+			system.equityHistory.put(date, in.readDouble());
+		}
+
+		int strategies = in.readInt();
+		if (strategies >= 0) {
+			system.tradingStrategies = new HashMap<>();
+			for (int i = 0; i < strategies; i++) {
+				Stock stock = readWalletStock(in, wallet).getStock();
+				system.tradingStrategies.put(stock.getCode(),
+						new TradingStrategyImpl(stock, in.readInt(), in.readInt(), in.readDouble()));
+			}
+		}
+		return system;
+	}
+
+	private static StockTrade readWalletStock(DataInput in, Map<String, StockTrade> wallet) throws IOException {
+		String code = in.readUTF();
+		StockTrade stockTrade = wallet.get(code);
+		if (stockTrade == null) {
+			throw new IOException("Stock " + code + " is not in the written wallet.");
+		}
+		return stockTrade;
+	}
+
+}
@@ -0,0 +1,160 @@
+package preti.spark.stock.system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * A {@link TradeSystem} taken in the middle of a walk-forward analysis, after
+ * the test windows ending up to the checkpoint date, stored in a compact binary
+ * file so later runs can resume it (see {@link WalkForward#resume}). Only the
+ * stock codes are stored, the histories coming from the resuming run, and the
+ * strategies are stored as their parameters. The key identifies the analysis
+ * the system comes from, so the checkpoint of another one is not resumed, and
+ * the bars of each stock up to the checkpoint date are stored as their count
+ * and a hash, so the checkpoint isn't resumed over a history that changed.
+ */
+public class TradeSystemCheckpoint {
+	private static final Log log = LogFactory.getLog(TradeSystemCheckpoint.class);
+
+	// "TSC3": trade system checkpoint, version 3
+	private static final int MAGIC = 0x54534333;
+
+	private TradeSystem system;
+	private Date date;
+	private String key;
+
+	public TradeSystemCheckpoint(TradeSystem system, Date date, String key) {
+		super();
+		this.system = system;
+		this.date = date;
+		this.key = key;
+	}
+
+	public TradeSystem getSystem() {
+		return system;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Writes the checkpoint, replacing the file only once it is complete.
+	 */
+	public void write(File file) throws IOException {
+		File temporary = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp" + System.nanoTime());
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporary)))) {
+				out.writeInt(MAGIC);
+				byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(keyBytes.length);
+				out.write(keyBytes);
+				out.writeLong(date.getTime());
+				int epochDay = EpochDays.fromDate(date);
+				List<Stock> stocks = system.getStocks();
+				out.writeInt(stocks.size());
+				for (Stock s : stocks) {
+					int bars = s.getSeries().floorIndex(epochDay) + 1;
+					out.writeUTF(s.getCode());
+					out.writeInt(bars);
+					out.writeLong(historyHash(s.getSeries(), bars));
+				}
+				system.writeState(out);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temporary.delete();
+		}
+		log.info(String.format("Stored checkpoint of %s in %s (%s bytes)", date, file, file.length()));
+	}
+
+	/**
+	 * Reads the checkpoint of the analysis with the informed key over the
+	 * stocks, which must be the ones of the stored system, or returns null if
+	 * the file doesn't exist, was written by another version, holds the
+	 * checkpoint of another analysis or the histories of the stocks up to the
+	 * checkpoint date differ from the stored ones.
+	 */
+	public static TradeSystemCheckpoint read(File file, String key, Collection<Stock> stocks) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int magic = in.readInt();
+			if (magic != MAGIC) {
+				log.warn(String.format("Ignoring checkpoint %s of another version: %08x", file, magic));
+				return null;
+			}
+			byte[] keyBytes = new byte[in.readInt()];
+			in.readFully(keyBytes);
+			String storedKey = new String(keyBytes, StandardCharsets.UTF_8);
+			if (!storedKey.equals(key)) {
+				log.warn(String.format("Ignoring checkpoint %s of another analysis: %s", file, storedKey));
+				return null;
+			}
+			Date date = new Date(in.readLong());
+
+			Map<String, Stock> stocksByCode = new HashMap<>();
+			for (Stock s : stocks) {
+				stocksByCode.put(s.getCode(), s);
+			}
+			int epochDay = EpochDays.fromDate(date);
+			for (int i = in.readInt(); i > 0; i--) {
+				String code = in.readUTF();
+				int bars = in.readInt();
+				long hash = in.readLong();
+				Stock stock = stocksByCode.get(code);
+				if (stock == null || stock.getSeries().floorIndex(epochDay) + 1 != bars
+						|| historyHash(stock.getSeries(), bars) != hash) {
+					log.warn(String.format("Ignoring checkpoint %s, the history of %s up to %s changed", file, code,
+							date));
+					return null;
+				}
+			}
+			TradeSystem system = TradeSystem.readState(in, stocksByCode);
+			log.info(String.format("Loaded checkpoint of %s from %s", date, file));
+			return new TradeSystemCheckpoint(system, date, key);
+		}
+	}
+
+	private static long historyHash(PriceSeries series, int bars) {
+		long hash = 1;
+		for (int i = 0; i < bars; i++) {
+			hash = 31 * hash + series.getDate(i);
+			hash = 31 * hash + Double.doubleToLongBits(series.getHigh(i));
+			hash = 31 * hash + Double.doubleToLongBits(series.getLow(i));
+			hash = 31 * hash + Double.doubleToLongBits(series.getClose(i));
+			hash = 31 * hash + Double.doubleToLongBits(series.getVolume(i));
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,163 @@
+package preti.spark.stock.system;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * The trading days of a set of stocks, each with the stocks that have a bar on
+ * that day. Days are kept sorted and the (stock, bar index) events of all days
+ * are stored contiguously, day after day, with the stocks of a day in the order
+ * they were informed. Built once for a set of stocks, it lets a date range be
+ * walked visiting only the bars that exist in it.
+ */
+public class TradingCalendar {
+	private Stock[] stocks;
+	private int[] modificationCounts;
+
+	private int[] days;
+	// the events of days[i] are in [firstEvent[i], firstEvent[i + 1])
+	private int[] firstEvent;
+	private int[] eventStocks;
+	private int[] eventBars;
+
+	public TradingCalendar(List<Stock> stocks) {
+		this.stocks = stocks.toArray(new Stock[stocks.size()]);
+		this.modificationCounts = new int[this.stocks.length];
+
+		int totalBars = 0;
+		for (int s = 0; s < this.stocks.length; s++) {
+			PriceSeries series = this.stocks[s].getSeries();
+			modificationCounts[s] = series.getModificationCount();
+			totalBars += series.size();
+		}
+
+		int[] allDays = new int[totalBars];
+		int n = 0;
+		for (Stock stock : this.stocks) {
+			PriceSeries series = stock.getSeries();
+			for (int i = 0; i < series.size(); i++) {
+				allDays[n++] = series.getDate(i);
+			}
+		}
+		Arrays.sort(allDays);
+		int dayCount = 0;
+		for (int i = 0; i < allDays.length; i++) {
+			if (i == 0 || allDays[i] != allDays[i - 1]) {
+				allDays[dayCount++] = allDays[i];
+			}
+		}
+		days = Arrays.copyOf(allDays, dayCount);
+
+		firstEvent = new int[dayCount + 1];
+		for (Stock stock : this.stocks) {
+			PriceSeries series = stock.getSeries();
+			for (int i = 0; i < series.size(); i++) {
+				firstEvent[Arrays.binarySearch(days, series.getDate(i)) + 1]++;
+			}
+		}
+		for (int i = 0; i < dayCount; i++) {
+			firstEvent[i + 1] += firstEvent[i];
+		}
+
+		eventStocks = new int[totalBars];
+		eventBars = new int[totalBars];
+		int[] next = Arrays.copyOf(firstEvent, dayCount);
+		for (int s = 0; s < this.stocks.length; s++) {
+			PriceSeries series = this.stocks[s].getSeries();
+			for (int i = 0; i < series.size(); i++) {
+				int e = next[Arrays.binarySearch(days, series.getDate(i))]++;
+				eventStocks[e] = s;
+				eventBars[e] = i;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether the calendar still reflects the histories of its stocks.
+	 */
+	public boolean isUpToDate(List<Stock> stocks) {
+		if (stocks.size() != this.stocks.length) {
+			return false;
+		}
+		for (int s = 0; s < this.stocks.length; s++) {
+			if (stocks.get(s) != this.stocks[s]
+					|| this.stocks[s].getSeries().getModificationCount() != modificationCounts[s]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getStockCount() {
+		return stocks.length;
+	}
+
+	public Stock getStock(int stockIndex) {
+		return stocks[stockIndex];
+	}
+
+	public int size() {
+		return days.length;
+	}
+
+	public int getDay(int dayIndex) {
+		return days[dayIndex];
+	}
+
+	/**
+	 * Returns the index of the first day at or after the informed date, or 0
+	 * if it is null.
+	 */
+	public int firstDayIndex(Date initialDate) {
+		if (initialDate == null) {
+			return 0;
+		}
+		int i = lowerBound(EpochDays.fromDate(initialDate));
+		if (i < days.length && EpochDays.toMillis(days[i]) < initialDate.getTime()) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the last day at or before the informed date, or of
+	 * the last day if it is null.
+	 */
+	public int lastDayIndex(Date finalDate) {
+		if (finalDate == null) {
+			return days.length - 1;
+		}
+		int i = lowerBound(EpochDays.fromDate(finalDate) + 1) - 1;
+		if (i >= 0 && EpochDays.toMillis(days[i]) > finalDate.getTime()) {
+			i--;
+		}
+		return i;
+	}
+
+	public int getFirstEvent(int dayIndex) {
+		return firstEvent[dayIndex];
+	}
+
+	public int getEndEvent(int dayIndex) {
+		return firstEvent[dayIndex + 1];
+	}
+
+	public int getEventStock(int event) {
+		return eventStocks[event];
+	}
+
+	public int getEventBar(int event) {
+		return eventBars[event];
+	}
+
+	private int lowerBound(int day) {
+		int i = Arrays.binarySearch(days, day);
+		return i >= 0 ? i : -i - 1;
+	}
+
+}
@@ -0,0 +1,28 @@
+package preti.spark.stock.system;
+
+import java.util.Date;
+
+public interface TradingStrategy {
+
+	boolean enterPosition(Date d);
+
+	boolean exitPosition(Date d);
+
+	double calculatePositionSize(Date d);
+
+	double calculateStopLossPoint(Date d);
+
+	/*
+	 * Same as the methods above, for the bar at the informed index of the
+	 * stock history.
+	 */
+
+	boolean enterPosition(int barIndex);
+
+	boolean exitPosition(int barIndex);
+
+	double calculatePositionSize(int barIndex);
+
+	double calculateStopLossPoint(int barIndex);
+
+}
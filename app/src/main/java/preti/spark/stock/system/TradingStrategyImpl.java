@@ -0,0 +1,225 @@
+package preti.spark.stock.system;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+
+import eu.verdelhan.ta4j.Tick;
+import eu.verdelhan.ta4j.TimeSeries;
+import eu.verdelhan.ta4j.indicators.helpers.HighestValueIndicator;
+import eu.verdelhan.ta4j.indicators.simple.ClosePriceIndicator;
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.metrics.Metrics.Counter;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+public class TradingStrategyImpl implements TradingStrategy {
+	private static final Log log = LogFactory.getLog(TradingStrategyImpl.class);
+
+	static final double RISK_FACTOR = 0.02;
+	static final double MINIMUM_VOLUME = Math.pow(10, 6);
+
+	// channels valid for the first channelBars bars, moved forward by the
+	// strategy's own rolling windows when the history grows past them
+	private double[] lowestValues;
+	private double[] highestValues;
+	private int channelBars;
+	private int rewriteCount;
+	private DonchianChannel.Rolling lowestChannel;
+	private DonchianChannel.Rolling highestChannel;
+
+	private int entryDonchianSize, exitDonchianSize;
+	private double accountInitialPosition;
+
+	private Stock stock;
+
+	public TradingStrategyImpl(Stock stock, int entryDonchianSize, int exitDonchianSize,
+			double accountInitialPosition) {
+		super();
+		this.entryDonchianSize = entryDonchianSize;
+		this.exitDonchianSize = exitDonchianSize;
+		this.accountInitialPosition = accountInitialPosition;
+		this.stock = stock;
+
+		loadChannels();
+		Metrics.increment(Counter.STRATEGIES_BUILT);
+	}
+
+	private void loadChannels() {
+		IndicatorCache indicators = IndicatorCache.forStock(stock);
+		rewriteCount = stock.getSeries().getRewriteCount();
+		channelBars = stock.getSeries().size();
+		lowestChannel = null;
+		highestChannel = null;
+		if (exitDonchianSize > 0) {
+			this.lowestValues = indicators.getLowestValues(exitDonchianSize);
+		}
+		if (entryDonchianSize > 0) {
+			this.highestValues = indicators.getHighestValues(entryDonchianSize);
+		}
+	}
+
+	/**
+	 * Makes the channels cover the informed number of bars. Bars appended to
+	 * the history since the channels were fetched are added by rolling windows
+	 * kept by the strategy, at a constant cost per bar that doesn't depend on
+	 * the shared cache, and the channels are fetched again only when existing
+	 * bars change.
+	 */
+	private void ensureChannels(int bars) {
+		if (bars <= channelBars) {
+			return;
+		}
+		PriceSeries series = stock.getSeries();
+		if (series.getRewriteCount() != rewriteCount) {
+			loadChannels();
+			return;
+		}
+
+		if (exitDonchianSize > 0) {
+			if (lowestChannel == null) {
+				lowestChannel = new DonchianChannel.Rolling(series, exitDonchianSize, false,
+						Arrays.copyOf(lowestValues, channelBars), channelBars);
+			}
+			lowestValues = lowestChannel.extendTo(series.size());
+		}
+		if (entryDonchianSize > 0) {
+			if (highestChannel == null) {
+				highestChannel = new DonchianChannel.Rolling(series, entryDonchianSize, true,
+						Arrays.copyOf(highestValues, channelBars), channelBars);
+			}
+			highestValues = highestChannel.extendTo(series.size());
+		}
+		channelBars = series.size();
+	}
+
+	public int getEntryDonchianSize() {
+		return entryDonchianSize;
+	}
+
+	public int getExitDonchianSize() {
+		return exitDonchianSize;
+	}
+
+	public double getAccountInitialPosition() {
+		return accountInitialPosition;
+	}
+
+	public Stock getStock() {
+		return stock;
+	}
+
+	@Override
+	public boolean enterPosition(Date d) {
+		if (entryDonchianSize == 0) {
+			if (log.isDebugEnabled()) {
+				log.debug("Skiping at date " + d);
+			}
+			return false;
+		}
+
+		int dataSize = stock.getHistorySizeBeforeDate(d);
+		if (dataSize <= entryDonchianSize){
+			if (log.isDebugEnabled()) {
+				log.debug("Skiping at date " + d);
+			}
+			return false;
+		}
+		ensureChannels(dataSize);
+		
+		if (log.isDebugEnabled() && d.getMonth() == 6 && d.getDate() == 22) {
+			log.debug(String.format("date=%s volume=%s close=%s highestValueIndicator=%s", d, stock.getVolumeAtDate(d), stock.getCloseValueAtDate(d), highestValues[dataSize-1]));
+		}
+		
+		return isEntrySignal(dataSize, stock.getVolumeAtDate(d), stock.getCloseValueAtDate(d));
+	}
+
+	@Override
+	public boolean enterPosition(int barIndex) {
+		if (entryDonchianSize == 0 || barIndex <= entryDonchianSize) {
+			if (log.isDebugEnabled()) {
+				log.debug("Skiping at bar " + barIndex);
+			}
+			return false;
+		}
+
+		ensureChannels(barIndex);
+		PriceSeries series = stock.getSeries();
+		return isEntrySignal(barIndex, series.getVolume(barIndex), series.getClose(barIndex));
+	}
+
+	private boolean isEntrySignal(int dataSize, double volume, double closeValue) {
+		return volume >= MINIMUM_VOLUME && closeValue > highestValues[dataSize - 1];
+	}
+
+	@Override
+	public boolean exitPosition(Date d) {
+		int dataSize = stock.getHistorySizeBeforeDate(d);
+		if (dataSize <= exitDonchianSize)
+			return false;
+
+		ensureChannels(dataSize);
+		return stock.getCloseValueAtDate(d) <= lowestValues[dataSize - 1];
+	}
+
+	@Override
+	public boolean exitPosition(int barIndex) {
+		if (barIndex <= exitDonchianSize)
+			return false;
+
+		ensureChannels(barIndex);
+		return stock.getSeries().getClose(barIndex) <= lowestValues[barIndex - 1];
+	}
+
+	@Override
+	public double calculatePositionSize(Date d) {
+		return calculatePositionSize(stock.getCloseValueAtDate(d), calculateStopLossPoint(d));
+	}
+
+	@Override
+	public double calculatePositionSize(int barIndex) {
+		return calculatePositionSize(stock.getSeries().getClose(barIndex), calculateStopLossPoint(barIndex));
+	}
+
+	private double calculatePositionSize(double stockValue, double stopLossPoint) {
+		// log.info(String.format("code=%s accountInitialPosition=%s
+		// risck_factor=%s stock_value=%s stopLossPoint=%s",
+		// stockTrade.getStock().getCode(), accountInitialPosition, RISK_FACTOR,
+		// stockValue, stopLossPoint));
+		return Math.floor((accountInitialPosition * RISK_FACTOR) / (stockValue - stopLossPoint));
+	}
+
+	@Override
+	public double calculateStopLossPoint(Date d) {
+		return calculateStopLossPoint(stock.getHistorySizeBeforeDate(d));
+	}
+
+	@Override
+	public double calculateStopLossPoint(int barIndex) {
+		ensureChannels(barIndex);
+		return lowestValues[barIndex - 1];
+	}
+
+	public static void main(String[] args) throws ParseException {
+		TimeSeries stockHistory = new TimeSeries("OIBR4", new ArrayList<>());
+		stockHistory.addTick(
+				new Tick(new DateTime(new SimpleDateFormat("yyyy-MM-dd").parse("2014-01-01")), 0, 10, 8, 12, 30));
+		stockHistory.addTick(
+				new Tick(new DateTime(new SimpleDateFormat("yyyy-MM-dd").parse("2014-01-02")), 0, 11, 9, 11, 31));
+		stockHistory.addTick(
+				new Tick(new DateTime(new SimpleDateFormat("yyyy-MM-dd").parse("2014-01-03")), 0, 12, 10, 10, 32));
+		stockHistory.addTick(
+				new Tick(new DateTime(new SimpleDateFormat("yyyy-MM-dd").parse("2014-01-04")), 0, 13, 11, 9, 33));
+		ClosePriceIndicator closeIndicator = new ClosePriceIndicator(stockHistory);
+		HighestValueIndicator highIndicator = new HighestValueIndicator(closeIndicator, 2);
+		System.out.println(highIndicator.getValue(2).toDouble());
+
+	}
+
+}
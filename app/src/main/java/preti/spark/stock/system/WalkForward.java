@@ -0,0 +1,210 @@
+package preti.spark.stock.system;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+
+import preti.spark.stock.metrics.Metrics;
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Walk-forward analysis: each test window is traded with the strategies
+ * optimized on the months right before it, by default one month of training
+ * for each month of test. Since the optimizations only depend on the history,
+ * the training windows of all test windows are optimized up front in a single
+ * distributed run and the portfolio is then replayed window by window with the
+ * precomputed strategies.
+ */
+public class WalkForward {
+	private static final Log log = LogFactory.getLog(WalkForward.class);
+
+	private DistributedParameterOptimizer optimizer;
+	private int trainingMonths;
+	private int testMonths;
+
+	public WalkForward(DistributedParameterOptimizer optimizer) {
+		this(optimizer, 1, 1);
+	}
+
+	public WalkForward(DistributedParameterOptimizer optimizer, int trainingMonths, int testMonths) {
+		super();
+		if (trainingMonths < 1 || testMonths < 1) {
+			throw new IllegalArgumentException("Training and test windows must have at least one month.");
+		}
+		this.optimizer = optimizer;
+		this.trainingMonths = trainingMonths;
+		this.testMonths = testMonths;
+	}
+
+	public int getTrainingMonths() {
+		return trainingMonths;
+	}
+
+	public int getTestMonths() {
+		return testMonths;
+	}
+
+	/**
+	 * Returns the test windows, starting after the first training window and
+	 * ending no later than the final date.
+	 */
+	public List<DateInterval> testWindows(Date initialDate, Date finalDate) {
+		List<DateInterval> windows = new ArrayList<>();
+		DateTime currentInitialDate = new DateTime(initialDate.getTime()).plusMonths(trainingMonths);
+		DateTime currentFinalDate = currentInitialDate.plusMonths(testMonths);
+		while (currentFinalDate.isBefore(finalDate.getTime() + 1)) {
+			windows.add(new DateInterval(currentInitialDate.toDate(), currentFinalDate.toDate()));
+			currentInitialDate = currentInitialDate.plusMonths(testMonths);
+			currentFinalDate = currentFinalDate.plusMonths(testMonths);
+		}
+		return windows;
+	}
+
+	/**
+	 * Returns the test window holding the date, on the same calendar of
+	 * {@link #testWindows(Date, Date)} but possibly ending after the last bar,
+	 * or null if the date comes before the first one. A date that ends a window
+	 * belongs to it, not to the next.
+	 */
+	public DateInterval testWindowAt(Date initialDate, Date date) {
+		DateTime currentInitialDate = new DateTime(initialDate.getTime()).plusMonths(trainingMonths);
+		if (date.before(currentInitialDate.toDate())) {
+			return null;
+		}
+		DateTime currentFinalDate = currentInitialDate.plusMonths(testMonths);
+		while (date.after(currentFinalDate.toDate())) {
+			currentInitialDate = currentInitialDate.plusMonths(testMonths);
+			currentFinalDate = currentFinalDate.plusMonths(testMonths);
+		}
+		return new DateInterval(currentInitialDate.toDate(), currentFinalDate.toDate());
+	}
+
+	/**
+	 * Optimizes the strategies of a single test window over its training
+	 * months and applies them to the system, as the analysis does when it
+	 * enters the window, so a system that keeps going can move on to it.
+	 */
+	public void applyWindowStrategies(TradeSystem system, DateInterval testWindow) {
+		DateInterval trainingWindow = trainingWindow(testWindow);
+		log.info("Optimizing the strategies of " + testWindow + " with training data " + trainingWindow);
+		long start = System.nanoTime();
+		Map<String, TradingStrategy> windowStrategies = optimizer.optimize(system.getStocks(), trainingWindow);
+		Metrics.addTimeSince("optimize", start);
+
+		Map<String, TradingStrategy> strategies = system.getTradingStrategies();
+		system.setTradingStrategies(
+				mergeStrategies(strategies == null ? new HashMap<>() : strategies, windowStrategies));
+	}
+
+	/**
+	 * Returns the training months right before the test window.
+	 */
+	public DateInterval trainingWindow(DateInterval testWindow) {
+		DateTime testInitialDate = new DateTime(testWindow.getInitialDate().getTime());
+		return new DateInterval(testInitialDate.minusMonths(trainingMonths).toDate(),
+				testInitialDate.minusDays(1).toDate());
+	}
+
+	/**
+	 * Runs the walk-forward analysis of the stocks between the dates, closing
+	 * the trades still open at the final date.
+	 */
+	public TradeSystem run(Collection<Stock> stocks, Date initialDate, Date finalDate) {
+		return run(stocks, initialDate, finalDate, true);
+	}
+
+	/**
+	 * Runs the walk-forward analysis of the stocks between the dates, leaving
+	 * the trades still open at the final date open when closeOpenTrades is
+	 * false, along with the strategies of the last window, so the system can
+	 * keep going.
+	 */
+	public TradeSystem run(Collection<Stock> stocks, Date initialDate, Date finalDate, boolean closeOpenTrades) {
+		TradeSystem system = new TradeSystem(stocks, optimizer.getOptimizer().getAccountInitialPosition(), null);
+		analyzeWindows(system, new HashMap<>(), testWindows(initialDate, finalDate), finalDate, closeOpenTrades);
+		return system;
+	}
+
+	/**
+	 * Resumes the walk-forward analysis started at the initial date from a
+	 * checkpoint of it, going only through the test windows ending after the
+	 * checkpoint date, with the same outcome of running it from the start. The
+	 * system of the checkpoint is updated and returned.
+	 */
+	public TradeSystem resume(TradeSystemCheckpoint checkpoint, Date initialDate, Date finalDate,
+			boolean closeOpenTrades) {
+		TradeSystem system = checkpoint.getSystem();
+		if (system.getAccountInitialPosition() != optimizer.getOptimizer().getAccountInitialPosition()) {
+			throw new IllegalArgumentException("The checkpoint was taken with another initial position.");
+		}
+
+		List<DateInterval> testWindows = new ArrayList<>();
+		for (DateInterval testWindow : testWindows(initialDate, finalDate)) {
+			if (testWindow.getFinalDate().after(checkpoint.getDate())) {
+				testWindows.add(testWindow);
+			}
+		}
+		log.info(String.format("Resuming from the checkpoint of %s with %s new test window(s)",
+				checkpoint.getDate(), testWindows.size()));
+		Map<String, TradingStrategy> strategies = system.getTradingStrategies();
+		analyzeWindows(system, strategies == null ? new HashMap<>() : strategies, testWindows, finalDate,
+				closeOpenTrades);
+		return system;
+	}
+
+	private void analyzeWindows(TradeSystem system, Map<String, TradingStrategy> strategies,
+			List<DateInterval> testWindows, Date finalDate, boolean closeOpenTrades) {
+		List<DateInterval> trainingWindows = new ArrayList<>();
+		for (DateInterval testWindow : testWindows) {
+			trainingWindows.add(trainingWindow(testWindow));
+		}
+		long start = System.nanoTime();
+		List<Map<String, TradingStrategy>> windowStrategies = optimizer.optimize(system.getStocks(),
+				trainingWindows);
+		Metrics.addTimeSince("optimize", start);
+
+		start = System.nanoTime();
+		Map<String, TradingStrategy> optimzedStrategies = strategies;
+		for (int w = 0; w < testWindows.size(); w++) {
+			DateInterval testWindow = testWindows.get(w);
+			log.info("Analyzing " + testWindow + " with training data " + trainingWindows.get(w));
+			optimzedStrategies = mergeStrategies(optimzedStrategies, windowStrategies.get(w));
+
+			system.setTradingStrategies(optimzedStrategies);
+			system.analyzeStocks(testWindow.getInitialDate(), testWindow.getFinalDate());
+			log.info("Analyze finished.");
+		}
+		if (closeOpenTrades) {
+			system.closeAllOpenTrades(finalDate);
+		}
+		Metrics.addTimeSince("analyze", start);
+	}
+
+	/**
+	 * Keeps the stocks left out of the new strategies able to exit their open
+	 * positions, but not to enter new ones.
+	 */
+	static Map<String, TradingStrategy> mergeStrategies(Map<String, TradingStrategy> oldStrategies,
+			Map<String, TradingStrategy> newStrategies) {
+		Map<String, TradingStrategy> mergedStrategies = new HashMap<>(newStrategies);
+
+		for (String code : oldStrategies.keySet()) {
+			if (!newStrategies.containsKey(code)) {
+				TradingStrategyImpl oldStrategy = (TradingStrategyImpl) oldStrategies.get(code);
+				mergedStrategies.put(code, new TradingStrategyImpl(oldStrategy.getStock(), 0,
+						oldStrategy.getExitDonchianSize(), oldStrategy.getAccountInitialPosition()));
+			}
+		}
+
+		return mergedStrategies;
+	}
+
+}
@@ -0,0 +1,138 @@
+package preti.spark.stock.reporting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the sink against a stand-in Elasticsearch node that only answers the
+ * bulk endpoint, recording the requests it gets.
+ */
+public class EsBulkSinkTest {
+	private HttpServer server;
+	private List<String> requests = Collections.synchronizedList(new ArrayList<>());
+	private volatile String response = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+	@Before
+	public void startNode() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/_bulk", exchange -> {
+			if (exchange.getRequestMethod().equals("POST")) {
+				requests.add(readAll(exchange.getRequestBody()));
+			}
+			byte[] body = response.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void stopNode() {
+		server.stop(0);
+	}
+
+	private Map<String, String> config(int batchEntries) {
+		Map<String, String> config = new HashMap<>();
+		config.put("es.nodes", "127.0.0.1");
+		config.put("es.port", String.valueOf(server.getAddress().getPort()));
+		config.put("es.batch.size.entries", String.valueOf(batchEntries));
+		return config;
+	}
+
+	@Test
+	public void sendsTheDocumentsInBatchesOfTheConfiguredSize() throws IOException {
+		List<String> events = Arrays.asList("{\"stockCode\":\"PETR4\",\"value\":1.5}",
+				"{\"stockCode\":\"VALE5\",\"value\":2.0}", "{\"stockCode\":\"A\u00c7\u00c3O3\",\"value\":3.25}",
+				"{\"stockCode\":\"ITUB4\",\"value\":null}", "{\"stockCode\":\"BBDC4\",\"value\":-1.0}",
+				"{\"stockCode\":\"ABEV3\",\"value\":0.0}", "{\"stockCode\":\"BBAS3\",\"value\":7.0}");
+
+		EsBulkSink sink = new EsBulkSink(config(3), "default_stock", "event");
+		for (String event : events) {
+			sink.send(event);
+		}
+		assertEquals(2, requests.size());
+		sink.close();
+
+		assertEquals(7, sink.getEventCount());
+		assertEquals(3, requests.size());
+		String action = "{\"index\":{\"_index\":\"default_stock\",\"_type\":\"event\"}}";
+		List<String> documents = new ArrayList<>();
+		int[] batchSizes = { 3, 3, 1 };
+		for (int r = 0; r < requests.size(); r++) {
+			String request = requests.get(r);
+			assertTrue(request.endsWith("\n"));
+			String[] lines = request.substring(0, request.length() - 1).split("\n", -1);
+			assertEquals(batchSizes[r] * 2, lines.length);
+			for (int l = 0; l < lines.length; l += 2) {
+				assertEquals(action, lines[l]);
+				documents.add(lines[l + 1]);
+			}
+		}
+		assertEquals(events, documents);
+	}
+
+	@Test
+	public void sendsNothingWithoutEvents() throws IOException {
+		EsBulkSink sink = new EsBulkSink(config(10), "default_balance", "event");
+		sink.close();
+		assertEquals(0, sink.getEventCount());
+		assertEquals(0, requests.size());
+	}
+
+	@Test
+	public void usesThePortOfTheNode() throws IOException {
+		Map<String, String> config = config(1000);
+		config.put("es.nodes", "127.0.0.1:" + server.getAddress().getPort() + ",127.0.0.2:1");
+		config.put("es.port", "1");
+		try (EsBulkSink sink = new EsBulkSink(config, "default_balance", "event")) {
+			sink.send("{\"balance\":10000.0}");
+		}
+		assertEquals(1, requests.size());
+	}
+
+	@Test
+	public void failsWhenTheNodeRejectsItems() throws IOException {
+		response = "{\"took\":1,\"errors\":true,\"items\":[{\"index\":{\"status\":400}}]}";
+		EsBulkSink sink = new EsBulkSink(config(1000), "default_balance", "event");
+		sink.send("{\"balance\":10000.0}");
+		try {
+			sink.close();
+			fail("Expected the failed items to be reported");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("failed items"));
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, read);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,168 @@
+package preti.spark.stock.reporting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.junit.Test;
+
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.reporting.AggregatedReport.AggregatedEvent;
+import preti.spark.stock.reporting.BalanceReport.BalanceEvent;
+import preti.spark.stock.reporting.OperationsReport.OperationEvent;
+import preti.spark.stock.reporting.OperationsReport.OperationType;
+import preti.spark.stock.reporting.StockReport.StockHistoryEvent;
+import preti.spark.stock.reporting.TradeReport.TradeEvent;
+
+/**
+ * Checks that the encoder writes every event type exactly as Jackson does.
+ * The dates include the daylight saving time changes of the default time zone,
+ * set by the build to America/Sao_Paulo, where the clocks moved at midnight.
+ */
+public class JsonEventEncoderTest {
+	private static final ObjectWriter JSON_WRITER = new ObjectMapper().writer();
+
+	private static final List<String> CODES = Arrays.asList("PETR4", "", null, "quote\" backslash\\ slash/",
+			"\u0000\u0001\b\t\n\u000b\f\r\u001f\u007f", "A\u00c7\u00c3O3", "\u00e9\u00fc\u00df\u20ac",
+			"\u65e5\u672c\u682a", "chart \ud83d\udcc8");
+
+	private static final double[] VALUES = { 0.0, -0.0, 1, -1.5, 12.34, 0.1 + 0.2, 1e-7, 1e7, 123456789.125,
+			Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+	// one encoder for all the events, as in the reports
+	private JsonEventEncoder encoder = new JsonEventEncoder();
+
+	@Test
+	public void encodesAggregatedEvents() throws IOException {
+		for (Date date : dates()) {
+			for (String code : CODES) {
+				assertEncodesLikeJackson(new AggregatedEvent("default_aggregated", date, 12.5, Double.NaN,
+						Double.NaN, Double.NaN, Double.NaN, code));
+			}
+			assertEncodesLikeJackson(new AggregatedEvent(null, date, Double.NaN, Double.NaN, Double.NaN,
+					Double.NaN, Double.NaN, null));
+		}
+		for (double value : VALUES) {
+			Date date = EpochDays.toDate(15000);
+			assertEncodesLikeJackson(new AggregatedEvent("default_aggregated", date, value, value, Double.NaN,
+					value, value, "PETR4"));
+			assertEncodesLikeJackson(new AggregatedEvent("default_aggregated", date, value, Double.NaN, value,
+					value, value, "PETR4"));
+		}
+	}
+
+	@Test
+	public void encodesBalanceEvents() throws IOException {
+		for (Date date : dates()) {
+			assertEncodesLikeJackson(new BalanceEvent(date, 10000.0, 10250.75, "default_balance"));
+			assertEncodesLikeJackson(new BalanceEvent(date, null, null, null));
+		}
+		for (double value : VALUES) {
+			assertEncodesLikeJackson(new BalanceEvent(EpochDays.toDate(15000), value, -value, "default_balance"));
+		}
+	}
+
+	@Test
+	public void encodesOperationEvents() throws IOException {
+		for (Date date : dates()) {
+			for (String code : CODES) {
+				assertEncodesLikeJackson(new OperationEvent("default_operations", OperationType.BUY, code, date, 100,
+						9.5, 10.25, Double.NaN, false));
+				assertEncodesLikeJackson(new OperationEvent("default_operations", OperationType.SELL, code, date,
+						100, 9.5, 10.25, 11.5, true));
+			}
+		}
+		for (double value : VALUES) {
+			assertEncodesLikeJackson(new OperationEvent(null, OperationType.SELL, "PETR4", EpochDays.toDate(15000),
+					value, value, 1, value, false));
+		}
+	}
+
+	@Test
+	public void encodesStockHistoryEvents() throws IOException {
+		for (Date date : dates()) {
+			for (String code : CODES) {
+				assertEncodesLikeJackson(new StockHistoryEvent(code, date, 11, 9.5, 10.01, 1500000, "default_stock"));
+			}
+		}
+		for (double value : VALUES) {
+			assertEncodesLikeJackson(
+					new StockHistoryEvent("PETR4", EpochDays.toDate(15000), value, value, value, value, null));
+		}
+	}
+
+	@Test
+	public void encodesTradeEvents() throws IOException {
+		List<Date> dates = dates();
+		for (int i = 0; i < dates.size(); i++) {
+			Date buyDate = dates.get(i);
+			Date sellDate = dates.get((i + 1) % dates.size());
+			for (String code : CODES) {
+				// open and closed trades
+				assertEncodesLikeJackson(new TradeEvent(buyDate, null, code, 100, 9.5, "default_trade"));
+				assertEncodesLikeJackson(new TradeEvent(buyDate, sellDate, code, 100, 9.5, "default_trade"));
+			}
+		}
+		for (double value : VALUES) {
+			assertEncodesLikeJackson(new TradeEvent(EpochDays.toDate(15000), null, "PETR4", value, value, null));
+		}
+	}
+
+	private void assertEncodesLikeJackson(Object event) throws IOException {
+		String expected = JSON_WRITER.writeValueAsString(event);
+		assertEquals(expected, encoder.encodeToString(event));
+		assertEquals(expected, new JsonEventEncoder().encodeToString(event));
+	}
+
+	/**
+	 * Days at midnight, as the histories have them, and the instants around
+	 * each daylight saving time change of the default time zone from 2000 to
+	 * 2020, along with the start of their days and of the days next to them.
+	 */
+	private static List<Date> dates() {
+		List<Date> dates = new ArrayList<>();
+		for (int day = (int) LocalDate.of(2014, 12, 25).toEpochDay(); day <= LocalDate.of(2015, 1, 5)
+				.toEpochDay(); day++) {
+			dates.add(EpochDays.toDate(day));
+		}
+		dates.add(new Date(0));
+		dates.add(new Date(-1));
+		// outside the years the encoder formats itself
+		dates.add(new Date(-15000000000000L));
+		dates.add(new Date(300000000000000L));
+
+		ZoneRules rules = ZoneId.systemDefault().getRules();
+		Instant end = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+		ZoneOffsetTransition transition = rules
+				.nextTransition(LocalDate.of(2000, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+		int transitions = 0;
+		while (transition != null && transition.getInstant().isBefore(end)) {
+			long millis = transition.toEpochSecond() * 1000;
+			for (long delta : new long[] { -3600001, -1, 0, 1, 3600000 }) {
+				dates.add(new Date(millis + delta));
+			}
+			int epochDay = EpochDays.fromMillis(millis);
+			for (int day = epochDay - 1; day <= epochDay + 1; day++) {
+				dates.add(EpochDays.toDate(day));
+			}
+			transitions++;
+			transition = rules.nextTransition(transition.getInstant());
+		}
+		assertTrue("No daylight saving time changes in " + ZoneId.systemDefault(),
+				rules.isFixedOffset() || transitions > 0);
+		return dates;
+	}
+
+}
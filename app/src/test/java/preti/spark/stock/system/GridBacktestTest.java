@@ -0,0 +1,123 @@
+package preti.spark.stock.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Checks the balances of the one-pass grid backtest against a
+ * {@link TradeSystem} running a {@link TradingStrategyImpl} per combination,
+ * over synthetic stocks and training windows starting and ending on trading
+ * days, weekends and in the middle of a day. The calmer stocks have stops
+ * close enough to the entries for the positions to be cut to the balance.
+ */
+public class GridBacktestTest {
+	private static final ParameterGrid GRID = new ParameterGrid(5, 12, 2, 7);
+
+	@Test
+	public void balancesMatchTheTradeSystem() {
+		for (long seed = 1; seed <= 4; seed++) {
+			Stock stock = seed % 2 == 0 ? createStock("RAND" + seed, new Random(seed), 300, 20, 0.02)
+					: createStock("CALM" + seed, new Random(seed), 300, 150, 0.004);
+			for (double capital : new double[] { 100000, 5000 }) {
+				// from the first bar, before the channels fill
+				assertBalancesMatch(stock, capital, stock.getDateAt(0), date(2011, 2, 25));
+				assertBalancesMatch(stock, capital, date(2010, 1, 4), date(2011, 2, 25));
+				// a Saturday and a Sunday
+				assertBalancesMatch(stock, capital, date(2010, 3, 6), date(2010, 11, 14));
+				// in the middle of trading days
+				assertBalancesMatch(stock, capital, new Date(date(2010, 2, 3).getTime() + 43200000),
+						new Date(date(2010, 9, 15).getTime() + 43200000));
+			}
+		}
+	}
+
+	@Test
+	public void bestCombinationMatchesTheSearchOverTradeSystems() {
+		double capital = 100000;
+		for (long seed = 5; seed <= 7; seed++) {
+			Stock stock = createStock("RAND" + seed, new Random(seed), 300, 20, 0.02);
+			Date initialDate = date(2010, 1, 4);
+			Date finalDate = date(2010, 12, 31);
+			ParameterOptimizer optimizer = new ParameterOptimizer(GRID, OptimizationObjective.NET_GAIN, capital);
+
+			OptimizationResult expected = null;
+			for (int entry = GRID.getMinEntryDonchianSize(); entry <= GRID.getMaxEntryDonchianSize(); entry++) {
+				for (int exit = GRID.getMinExitDonchianSize(); exit <= GRID.getMaxExitDonchianSize(); exit++) {
+					OptimizationResult result = optimizer.evaluate(stock, entry, exit, initialDate, finalDate);
+					if (result.getScore() > (expected == null ? 0 : expected.getScore())) {
+						expected = result;
+					}
+				}
+			}
+			OptimizationResult actual = GridBacktest.findBest(stock, GRID, capital, initialDate, finalDate);
+			if (expected == null) {
+				assertEquals(null, actual);
+			} else {
+				assertEquals(expected.getEntryDonchianSize(), actual.getEntryDonchianSize());
+				assertEquals(expected.getExitDonchianSize(), actual.getExitDonchianSize());
+				assertEquals(expected.getScore(), actual.getScore(), 0);
+			}
+		}
+	}
+
+	private static void assertBalancesMatch(Stock stock, double capital, Date initialDate, Date finalDate) {
+		double[] balances = GridBacktest.run(stock, GRID, capital, initialDate, finalDate);
+		int exits = GRID.getMaxExitDonchianSize() - GRID.getMinExitDonchianSize() + 1;
+		assertEquals(GRID.size(), balances.length);
+
+		int traded = 0;
+		for (int c = 0; c < balances.length; c++) {
+			int entry = GRID.getMinEntryDonchianSize() + c / exits;
+			int exit = GRID.getMinExitDonchianSize() + c % exits;
+			TradeSystem system = new TradeSystem(stock, capital,
+					new TradingStrategyImpl(stock, entry, exit, capital));
+			system.analyzeStocks(initialDate, finalDate);
+			system.closeAllOpenTrades(finalDate);
+
+			String combination = String.format("%s entry=%s exit=%s capital=%s from %s to %s", stock.getCode(),
+					entry, exit, capital, initialDate, finalDate);
+			assertEquals(combination, system.getAccountBalance(), balances[c], 0);
+			traded += system.getStockTrade(stock.getCode()).hasAnyTrade() ? 1 : 0;
+		}
+		assertTrue("No trades to compare", traded > 0);
+	}
+
+	/**
+	 * Creates a random walk of weekdays with trends, volumes around the
+	 * minimum volume of the entries and a month of bars before the windows.
+	 */
+	private static Stock createStock(String code, Random random, int bars, double close, double volatility) {
+		Stock stock = new Stock(code);
+		int day = (int) LocalDate.of(2009, 12, 1).toEpochDay();
+		double trend = 0;
+		for (int i = 0; i < bars; i++) {
+			while (LocalDate.ofEpochDay(day).getDayOfWeek().getValue() > 5) {
+				day++;
+			}
+			if (random.nextInt(30) == 0) {
+				trend = random.nextGaussian() * 0.01;
+			}
+			close = Math.max(0.5, Math.round(close * (1 + trend + random.nextGaussian() * volatility) * 100)
+					/ 100.0);
+			double high = close + random.nextInt(40) / 100.0;
+			double low = Math.max(0.01, close - random.nextInt(40) / 100.0);
+			double volume = TradingStrategyImpl.MINIMUM_VOLUME * (0.5 + random.nextDouble());
+			stock.addHistory(day++, high, low, close, volume);
+		}
+		return stock;
+	}
+
+	private static Date date(int year, int month, int day) {
+		return EpochDays.toDate((int) LocalDate.of(year, month, day).toEpochDay());
+	}
+
+}
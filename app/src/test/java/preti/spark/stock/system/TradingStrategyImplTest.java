@@ -0,0 +1,137 @@
+package preti.spark.stock.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import eu.verdelhan.ta4j.Tick;
+import eu.verdelhan.ta4j.TimeSeries;
+import eu.verdelhan.ta4j.indicators.helpers.HighestValueIndicator;
+import eu.verdelhan.ta4j.indicators.helpers.LowestValueIndicator;
+import eu.verdelhan.ta4j.indicators.simple.MaxPriceIndicator;
+import eu.verdelhan.ta4j.indicators.simple.MinPriceIndicator;
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Checks the signals of the strategies, computed over the native Donchian
+ * channels, against ta4j's highest and lowest value indicators, for every
+ * window of the default grid.
+ */
+public class TradingStrategyImplTest {
+	private static final int BARS = 400;
+	private static final ParameterGrid GRID = ParameterGrid.DEFAULT;
+
+	@Test
+	public void signalsMatchTa4j() {
+		for (long seed = 1; seed <= 3; seed++) {
+			Stock stock = new Stock("RAND" + seed);
+			appendRandomBars(stock, new Random(seed), BARS);
+			assertSignalsMatchTa4j(stock, createStrategies(stock), 1);
+		}
+	}
+
+	/**
+	 * Strategies built before bars are appended to the history extend their
+	 * channels to the new bars.
+	 */
+	@Test
+	public void signalsMatchTa4jOnAppendedBars() {
+		for (long seed = 4; seed <= 5; seed++) {
+			Random random = new Random(seed);
+			Stock stock = new Stock("RAND" + seed);
+			appendRandomBars(stock, random, BARS / 2);
+			TradingStrategyImpl[][] strategies = createStrategies(stock);
+			// evaluated before and after the appends, a few bars at a time
+			assertSignalsMatchTa4j(stock, strategies, 1);
+			while (stock.getHistorySize() < BARS) {
+				int from = stock.getHistorySize();
+				appendRandomBars(stock, random, 1 + random.nextInt(3));
+				assertSignalsMatchTa4j(stock, strategies, from);
+			}
+		}
+	}
+
+	private static TradingStrategyImpl[][] createStrategies(Stock stock) {
+		int entries = GRID.getMaxEntryDonchianSize() - GRID.getMinEntryDonchianSize() + 1;
+		int exits = GRID.getMaxExitDonchianSize() - GRID.getMinExitDonchianSize() + 1;
+		TradingStrategyImpl[][] strategies = new TradingStrategyImpl[entries][exits];
+		for (int e = 0; e < entries; e++) {
+			for (int x = 0; x < exits; x++) {
+				strategies[e][x] = new TradingStrategyImpl(stock, GRID.getMinEntryDonchianSize() + e,
+						GRID.getMinExitDonchianSize() + x, 10000);
+			}
+		}
+		return strategies;
+	}
+
+	private static void assertSignalsMatchTa4j(Stock stock, TradingStrategyImpl[][] strategies, int fromBar) {
+		PriceSeries series = stock.getSeries();
+		TimeSeries timeSeries = new TimeSeries(stock.getCode(), new ArrayList<>());
+		for (int i = 0; i < series.size(); i++) {
+			timeSeries.addTick(new Tick(new DateTime(EpochDays.toMillis(series.getDate(i))), 0, series.getHigh(i),
+					series.getLow(i), series.getClose(i), series.getVolume(i)));
+		}
+
+		int entrySignals = 0, exitSignals = 0;
+		for (TradingStrategyImpl[] row : strategies) {
+			for (TradingStrategyImpl strategy : row) {
+				int entry = strategy.getEntryDonchianSize();
+				int exit = strategy.getExitDonchianSize();
+				HighestValueIndicator highest = new HighestValueIndicator(new MaxPriceIndicator(timeSeries), entry);
+				LowestValueIndicator lowest = new LowestValueIndicator(new MinPriceIndicator(timeSeries), exit);
+				for (int i = fromBar; i < series.size(); i++) {
+					String bar = String.format("%s entry=%s exit=%s bar=%s", stock.getCode(), entry, exit, i);
+					Date date = stock.getDateAt(i);
+					double close = series.getClose(i);
+					boolean enter = i > entry && series.getVolume(i) >= TradingStrategyImpl.MINIMUM_VOLUME
+							&& close > highest.getValue(i - 1).toDouble();
+					boolean exitSignal = i > exit && close <= lowest.getValue(i - 1).toDouble();
+					double stopLoss = lowest.getValue(i - 1).toDouble();
+
+					assertEquals(bar, enter, strategy.enterPosition(i));
+					assertEquals(bar, enter, strategy.enterPosition(date));
+					assertEquals(bar, exitSignal, strategy.exitPosition(i));
+					assertEquals(bar, exitSignal, strategy.exitPosition(date));
+					assertEquals(bar, stopLoss, strategy.calculateStopLossPoint(i), 0);
+					assertEquals(bar, stopLoss, strategy.calculateStopLossPoint(date), 0);
+					entrySignals += enter ? 1 : 0;
+					exitSignals += exitSignal ? 1 : 0;
+				}
+			}
+		}
+		if (fromBar == 1) {
+			assertTrue("No entry signals to compare", entrySignals > 0);
+			assertTrue("No exit signals to compare", exitSignals > 0);
+		}
+	}
+
+	/**
+	 * Appends a random walk of weekdays, with volumes around the minimum
+	 * volume of the entries.
+	 */
+	private static void appendRandomBars(Stock stock, Random random, int bars) {
+		PriceSeries series = stock.getSeries();
+		int day = series.isEmpty() ? (int) LocalDate.of(2010, 1, 4).toEpochDay() : series.getLastDate() + 1;
+		double close = series.isEmpty() ? 20 : series.getClose(series.size() - 1);
+		for (int i = 0; i < bars; i++) {
+			while (LocalDate.ofEpochDay(day).getDayOfWeek().getValue() > 5) {
+				day++;
+			}
+			close = Math.max(0.01, Math.round(close * (1 + random.nextGaussian() * 0.03) * 100) / 100.0);
+			double high = close + random.nextInt(50) / 100.0;
+			double low = Math.max(0.01, close - random.nextInt(50) / 100.0);
+			double volume = TradingStrategyImpl.MINIMUM_VOLUME * (0.5 + random.nextDouble());
+			stock.addHistory(day++, high, low, close, volume);
+		}
+	}
+
+}
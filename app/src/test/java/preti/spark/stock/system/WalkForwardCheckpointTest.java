@@ -0,0 +1,251 @@
+package preti.spark.stock.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.serializer.KryoSerializer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import preti.spark.stock.StockKryoRegistrator;
+import preti.spark.stock.model.DateInterval;
+import preti.spark.stock.model.EpochDays;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.model.StockTrade;
+import preti.spark.stock.model.Trade;
+
+/**
+ * Runs a walk-forward analysis of synthetic stocks on a local Spark context up
+ * to a checkpoint, resumes it with the histories that arrived after it and
+ * compares the result with the full run. Also checks that the distributed
+ * parameter search picks the parameters of the sequential one.
+ */
+public class WalkForwardCheckpointTest {
+	private static final String[] CODES = { "AAAA3", "BBBB4", "CCCC3", "DDDD4", "EEEE3", "FFFF11" };
+	private static final double CAPITAL = 100000;
+	private static final String KEY = "walk-forward test";
+
+	private static final Date INITIAL_DATE = date(2010, 1, 1);
+	private static final Date CHECKPOINT_DATE = date(2010, 9, 1);
+	private static final Date FINAL_DATE = date(2011, 4, 1);
+
+	private static JavaSparkContext sc;
+
+	private WalkForward walkForward;
+	private File file;
+
+	@BeforeClass
+	public static void startSpark() {
+		sc = new JavaSparkContext(new SparkConf().setMaster("local[2]").setAppName("WalkForwardCheckpointTest")
+				.set("spark.ui.enabled", "false").set("spark.serializer", KryoSerializer.class.getName())
+				.set("spark.kryo.registrator", StockKryoRegistrator.class.getName()));
+	}
+
+	@AfterClass
+	public static void stopSpark() {
+		sc.stop();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		walkForward = new WalkForward(new DistributedParameterOptimizer(sc,
+				new ParameterOptimizer(ParameterGrid.DEFAULT, OptimizationObjective.NET_GAIN, CAPITAL)));
+		file = File.createTempFile("walk-forward", ".checkpoint");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void resumedRunMatchesTheFullRun() throws IOException {
+		// the checkpoint is taken by a run that only had the histories up to
+		// its date
+		TradeSystem partial = walkForward.run(createStocks(CHECKPOINT_DATE), INITIAL_DATE, CHECKPOINT_DATE, false);
+		new TradeSystemCheckpoint(partial, CHECKPOINT_DATE, KEY).write(file);
+
+		List<Stock> stocks = createStocks(FINAL_DATE);
+		TradeSystemCheckpoint checkpoint = TradeSystemCheckpoint.read(file, KEY, stocks);
+		assertNotNull(checkpoint);
+		assertEquals(CHECKPOINT_DATE, checkpoint.getDate());
+		TradeSystem resumed = walkForward.resume(checkpoint, INITIAL_DATE, FINAL_DATE, false);
+		TradeSystem full = walkForward.run(stocks, INITIAL_DATE, FINAL_DATE, false);
+
+		assertTrue("No trades after the checkpoint", countTrades(full) > countTrades(partial));
+		assertSameSystem(full, resumed);
+		full.closeAllOpenTrades(FINAL_DATE);
+		resumed.closeAllOpenTrades(FINAL_DATE);
+		assertSameSystem(full, resumed);
+	}
+
+	@Test
+	public void checkpointOfAnotherAnalysisIsIgnored() throws IOException {
+		TradeSystem partial = walkForward.run(createStocks(CHECKPOINT_DATE), INITIAL_DATE, CHECKPOINT_DATE, false);
+		new TradeSystemCheckpoint(partial, CHECKPOINT_DATE, KEY).write(file);
+
+		assertNull(TradeSystemCheckpoint.read(file, KEY + " with another grid", createStocks(FINAL_DATE)));
+	}
+
+	@Test
+	public void checkpointOfAnotherVersionIsIgnored() throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			// "TSC1", followed by a state the current version can't read
+			out.writeInt(0x54534331);
+			out.writeLong(CHECKPOINT_DATE.getTime());
+		}
+
+		assertNull(TradeSystemCheckpoint.read(file, KEY, createStocks(FINAL_DATE)));
+	}
+
+	@Test
+	public void checkpointOverAnotherHistoryIsIgnored() throws IOException {
+		TradeSystem partial = walkForward.run(createStocks(CHECKPOINT_DATE), INITIAL_DATE, CHECKPOINT_DATE, false);
+		new TradeSystemCheckpoint(partial, CHECKPOINT_DATE, KEY).write(file);
+
+		// a bar before the checkpoint date was corrected in the source
+		List<Stock> corrected = createStocks(FINAL_DATE);
+		Stock stock = corrected.get(0);
+		int bar = stock.getSeries().floorIndex(EpochDays.fromDate(CHECKPOINT_DATE)) - 10;
+		stock.addHistory(stock.getSeries().getDate(bar), stock.getSeries().getHigh(bar),
+				stock.getSeries().getLow(bar), stock.getSeries().getClose(bar) + 0.01, stock.getSeries().getVolume(bar));
+		assertNull(TradeSystemCheckpoint.read(file, KEY, corrected));
+
+		// or a stock has bars missing up to it
+		assertNull(TradeSystemCheckpoint.read(file, KEY, createStocks(date(2010, 8, 20))));
+	}
+
+	@Test
+	public void distributedSearchMatchesTheSequentialOne() {
+		// the grid backtest per (stock, window) and the reduction of every
+		// combination, with an objective full of ties
+		assertSameParameters(new ParameterOptimizer(ParameterGrid.DEFAULT, OptimizationObjective.NET_GAIN, CAPITAL));
+		assertSameParameters(new ParameterOptimizer(ParameterGrid.DEFAULT, new CoarseNetGain(), CAPITAL));
+	}
+
+	private static void assertSameParameters(ParameterOptimizer optimizer) {
+		List<Stock> stocks = createStocks(FINAL_DATE);
+		List<DateInterval> windows = new ArrayList<>();
+		for (int month = 1; month <= 9; month += 2) {
+			windows.add(new DateInterval(date(2010, month, 1), date(2010, month + 3, 1)));
+		}
+
+		List<Map<String, TradingStrategy>> strategies = new DistributedParameterOptimizer(sc, optimizer)
+				.optimize(stocks, windows);
+		assertEquals(windows.size(), strategies.size());
+		int found = 0, missing = 0;
+		for (int w = 0; w < windows.size(); w++) {
+			DateInterval window = windows.get(w);
+			for (Stock stock : stocks) {
+				String unit = String.format("%s %s %s", optimizer.getObjective(), stock.getCode(), window);
+				OptimizationResult expected = optimizer.findBestParameters(stock, window.getInitialDate(),
+						window.getFinalDate());
+				TradingStrategyImpl strategy = (TradingStrategyImpl) strategies.get(w).get(stock.getCode());
+				if (expected == null) {
+					assertNull(unit, strategy);
+					missing++;
+				} else {
+					assertNotNull(unit, strategy);
+					assertEquals(unit, expected.getEntryDonchianSize(), strategy.getEntryDonchianSize());
+					assertEquals(unit, expected.getExitDonchianSize(), strategy.getExitDonchianSize());
+					found++;
+				}
+			}
+		}
+		assertTrue("No parameters found", found > 0);
+		assertTrue("No stock without parameters", missing > 0);
+	}
+
+	private static void assertSameSystem(TradeSystem expected, TradeSystem actual) {
+		assertEquals(expected.getBalanceHistory(), actual.getBalanceHistory());
+		assertEquals(expected.getEquityHistory(), actual.getEquityHistory());
+		assertEquals(expected.getAccountBalance(), actual.getAccountBalance(), 0);
+		assertEquals(expected.getEquity(), actual.getEquity(), 0);
+		assertEquals(describeTrades(expected), describeTrades(actual));
+	}
+
+	private static List<String> describeTrades(TradeSystem system) {
+		List<String> trades = new ArrayList<>();
+		for (StockTrade stockTrade : system.getWallet()) {
+			for (Trade trade : stockTrade.getTrades()) {
+				trades.add(trade.toString());
+			}
+		}
+		return trades;
+	}
+
+	private static int countTrades(TradeSystem system) {
+		return describeTrades(system).size();
+	}
+
+	/**
+	 * Creates the stocks with the weekday bars from a month before the
+	 * initial date up to the informed date, the same bars for every date.
+	 */
+	private static List<Stock> createStocks(Date lastDate) {
+		int lastDay = EpochDays.fromDate(lastDate);
+		List<Stock> stocks = new ArrayList<>();
+		for (int c = 0; c < CODES.length; c++) {
+			Random random = new Random(c);
+			Stock stock = new Stock(CODES[c]);
+			double close = 10 + 10 * random.nextDouble();
+			double trend = 0;
+			for (int day = (int) LocalDate.of(2009, 12, 1).toEpochDay(); day <= lastDay; day++) {
+				if (LocalDate.ofEpochDay(day).getDayOfWeek().getValue() > 5) {
+					continue;
+				}
+				if (random.nextInt(40) == 0) {
+					trend = random.nextGaussian() * 0.01;
+				}
+				close = Math.max(0.5, Math.round(close * (1 + trend + random.nextGaussian() * 0.015) * 100) / 100.0);
+				double high = close + random.nextInt(30) / 100.0;
+				double low = Math.max(0.01, close - random.nextInt(30) / 100.0);
+				stock.addHistory(day, high, low, close, 1000000 + random.nextInt(5000000));
+			}
+			stocks.add(stock);
+		}
+		return stocks;
+	}
+
+	/**
+	 * The net gain in whole thousands, so many combinations tie and the best
+	 * one depends on the tie-breaking.
+	 */
+	@SuppressWarnings("serial")
+	private static class CoarseNetGain implements OptimizationObjective {
+
+		@Override
+		public double evaluate(TradeSystem system) {
+			return Math.floor(OptimizationObjective.NET_GAIN.evaluate(system) / 1000);
+		}
+
+		@Override
+		public String toString() {
+			return "CoarseNetGain";
+		}
+	}
+
+	private static Date date(int year, int month, int day) {
+		return EpochDays.toDate((int) LocalDate.of(year, month, day).toEpochDay());
+	}
+
+}
@@ -0,0 +1,66 @@
+package preti.spark.stock.benchmark;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.TradingStrategy;
+import preti.spark.stock.system.TradingStrategyImpl;
+
+/**
+ * A full backtest of fixed strategies over the whole history, for a single
+ * stock and for a wallet of stocks sharing the capital.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BacktestBenchmark {
+
+	@Param({ "1", "10" })
+	public int tickers;
+
+	@Param({ "1", "5", "20" })
+	public int years;
+
+	private List<Stock> stocks;
+	private Map<String, TradingStrategy> strategies;
+	private Date initialDate, finalDate;
+
+	@Setup
+	public void setup() {
+		stocks = SyntheticData.createStocks(tickers, years, 42);
+		strategies = new HashMap<>();
+		for (Stock s : stocks) {
+			strategies.put(s.getCode(), new TradingStrategyImpl(s, 20, 10, 100000));
+		}
+		initialDate = stocks.get(0).getDateAt(0);
+		finalDate = stocks.get(0).getDateAt(stocks.get(0).getHistorySize() - 1);
+	}
+
+	@Benchmark
+	public TradeSystem analyzeStocks() {
+		TradeSystem system = new TradeSystem(stocks, 100000, strategies);
+		system.analyzeStocks(initialDate, finalDate);
+		return system;
+	}
+
+}
@@ -0,0 +1,73 @@
+package preti.spark.stock.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradingStrategyImpl;
+
+/**
+ * Per-bar cost of the lookups done by the backtest loop. The cost should not
+ * depend on the length of the history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BarLookupBenchmark {
+
+	@Param({ "1", "5", "10", "20" })
+	public int years;
+
+	private Stock stock;
+	private TradingStrategyImpl strategy;
+	private Date[] dates;
+	private int cursor;
+
+	@Setup
+	public void setup() {
+		stock = SyntheticData.createStock("BENC3", years, 42);
+		strategy = new TradingStrategyImpl(stock, 20, 10, 10000);
+		dates = stock.getAllHistoryDates().toArray(new Date[0]);
+	}
+
+	private int nextBar() {
+		cursor = cursor + 1 == dates.length ? 0 : cursor + 1;
+		return cursor;
+	}
+
+	@Benchmark
+	public int historySizeBeforeDate() {
+		return stock.getHistorySizeBeforeDate(dates[nextBar()]);
+	}
+
+	@Benchmark
+	public double closeValueAtDate() {
+		return stock.getCloseValueAtDate(dates[nextBar()]);
+	}
+
+	@Benchmark
+	public boolean enterPositionByDate() {
+		return strategy.enterPosition(dates[nextBar()]);
+	}
+
+	@Benchmark
+	public boolean enterPositionByIndex() {
+		return strategy.enterPosition(nextBar());
+	}
+
+}
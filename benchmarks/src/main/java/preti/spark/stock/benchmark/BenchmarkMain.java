@@ -0,0 +1,23 @@
+package preti.spark.stock.benchmark;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks as JMH's own launcher does, accepting the same options,
+ * but writing the results as JSON to jmh-result.json unless another result
+ * format is asked for, so runs of different releases can be compared.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		if (!Arrays.asList(args).contains("-rf")) {
+			args = Arrays.copyOf(args, args.length + 2);
+			args[args.length - 2] = "-rf";
+			args[args.length - 1] = "json";
+		}
+		Main.main(args);
+	}
+
+}
@@ -0,0 +1,67 @@
+package preti.spark.stock.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.OptimizationObjective;
+import preti.spark.stock.system.OptimizationResult;
+import preti.spark.stock.system.ParameterGrid;
+import preti.spark.stock.system.ParameterOptimizer;
+
+/**
+ * One month of optimization of the default grid for a single stock, with the
+ * batch kernel and with one TradeSystem backtest per combination.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GridOptimizationBenchmark {
+
+	@Param({ "1", "5", "20" })
+	public int years;
+
+	private Stock stock;
+	private Date initialDate, finalDate;
+	private ParameterOptimizer batchOptimizer;
+	private ParameterOptimizer perCombinationOptimizer;
+
+	@Setup
+	public void setup() {
+		stock = SyntheticData.createStock("BENC3", years, 42);
+		int lastBar = stock.getHistorySize() - 1;
+		initialDate = stock.getDateAt(lastBar - 21);
+		finalDate = stock.getDateAt(lastBar);
+
+		batchOptimizer = new ParameterOptimizer(10000);
+		// Same score as NET_GAIN, but not eligible for the batch kernel
+		perCombinationOptimizer = new ParameterOptimizer(ParameterGrid.DEFAULT,
+				system -> OptimizationObjective.NET_GAIN.evaluate(system), 10000);
+	}
+
+	@Benchmark
+	public OptimizationResult batchKernel() {
+		return batchOptimizer.findBestParameters(stock, initialDate, finalDate);
+	}
+
+	@Benchmark
+	public OptimizationResult perCombination() {
+		return perCombinationOptimizer.findBestParameters(stock, initialDate, finalDate);
+	}
+
+}
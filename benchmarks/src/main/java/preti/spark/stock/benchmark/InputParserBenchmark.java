@@ -0,0 +1,68 @@
+package preti.spark.stock.benchmark;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.CotahistParser;
+import preti.spark.stock.InputDataEntry;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+
+/**
+ * Parsing of COTAHIST records: positional parser, alone and through
+ * InputDataEntry.parseFromLine, against the former regex parser.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InputParserBenchmark {
+
+	private String[] lines;
+	private int cursor;
+
+	@Setup
+	public void setup() {
+		Stock stock = SyntheticData.createStock("BENC3", 4, 42);
+		PriceSeries series = stock.getSeries();
+		lines = new String[series.size()];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = SyntheticData.toCotahistLine(stock.getCode(), series.getDate(i), series.getClose(i),
+					series.getHigh(i), series.getLow(i), series.getClose(i), series.getVolume(i));
+		}
+	}
+
+	private String nextLine() {
+		cursor = cursor + 1 == lines.length ? 0 : cursor + 1;
+		return lines[cursor];
+	}
+
+	@Benchmark
+	public InputDataEntry positional() throws ParseException {
+		return CotahistParser.parse(nextLine());
+	}
+
+	@Benchmark
+	public InputDataEntry parseFromLine() throws ParseException {
+		return InputDataEntry.parseFromLine(nextLine());
+	}
+
+	@Benchmark
+	public InputDataEntry regex() throws ParseException {
+		return InputDataEntry.parseFromLineWithRegex(nextLine());
+	}
+
+}
@@ -0,0 +1,176 @@
+package preti.spark.stock.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.serializer.KryoSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.StockKryoRegistrator;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.reporting.AggregatedReport;
+import preti.spark.stock.reporting.BalanceReport;
+import preti.spark.stock.reporting.DistributedAggregatedReport;
+import preti.spark.stock.reporting.DistributedStockReport;
+import preti.spark.stock.reporting.OperationsReport;
+import preti.spark.stock.reporting.Report;
+import preti.spark.stock.reporting.ReportSink;
+import preti.spark.stock.reporting.ReportSinkFactory;
+import preti.spark.stock.reporting.StockReport;
+import preti.spark.stock.reporting.TradeReport;
+import preti.spark.stock.system.TradeSystem;
+import preti.spark.stock.system.TradingStrategy;
+import preti.spark.stock.system.TradingStrategyImpl;
+import scala.Tuple2;
+
+/**
+ * Generation of each report of a backtest, from its events up to the JSON
+ * handed to the sink, which only counts the UTF-8 bytes. The distributed
+ * reports build their events on a local Spark context, over the cached
+ * histories, and count them on the executors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+	@Param({ "balance", "operations", "trade", "stock", "aggregated", "distributedStock",
+			"distributedAggregated" })
+	public String report;
+
+	@Param({ "10" })
+	public int tickers;
+
+	@Param({ "5" })
+	public int years;
+
+	private TradeSystem system;
+	private CountingSinkFactory sinkFactory;
+	private JavaSparkContext sc;
+	private JavaPairRDD<String, Stock> distributedStocks;
+
+	@Setup
+	public void setup() {
+		List<Stock> stocks = SyntheticData.createStocks(tickers, years, 42);
+		Map<String, TradingStrategy> strategies = new HashMap<>();
+		for (Stock s : stocks) {
+			strategies.put(s.getCode(), new TradingStrategyImpl(s, 20, 10, 100000));
+		}
+		Stock first = stocks.get(0);
+		system = new TradeSystem(stocks, 100000, strategies);
+		system.analyzeStocks(first.getDateAt(0), first.getDateAt(first.getHistorySize() - 1));
+		system.closeAllOpenTrades(first.getDateAt(first.getHistorySize() - 1));
+		sinkFactory = new CountingSinkFactory();
+
+		if (report.startsWith("distributed")) {
+			sc = new JavaSparkContext(new SparkConf().setMaster("local[2]").setAppName("ReportBenchmark")
+					.set("spark.ui.enabled", "false").set("spark.serializer", KryoSerializer.class.getName())
+					.set("spark.kryo.registrator", StockKryoRegistrator.class.getName()));
+			List<Tuple2<String, Stock>> pairs = new ArrayList<>();
+			for (Stock s : stocks) {
+				pairs.add(new Tuple2<>(s.getCode(), s));
+			}
+			distributedStocks = sc.parallelizePairs(pairs).cache();
+			distributedStocks.count();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (sc != null) {
+			sc.stop();
+			sc = null;
+		}
+	}
+
+	private Report createReport() {
+		switch (report) {
+		case "balance":
+			return new BalanceReport(system, "localhost", 0, report);
+		case "operations":
+			return new OperationsReport(system, "localhost", 0, report);
+		case "trade":
+			return new TradeReport(system, "localhost", 0, report);
+		case "stock":
+			return new StockReport(system, "localhost", 0, report);
+		case "aggregated":
+			return new AggregatedReport(system, "localhost", 0, report);
+		case "distributedStock":
+			return new DistributedStockReport(system, distributedStocks, "localhost", 0, report);
+		case "distributedAggregated":
+			return new DistributedAggregatedReport(sc, system, distributedStocks, "localhost", 0, report);
+		default:
+			throw new IllegalArgumentException("Unknown report " + report);
+		}
+	}
+
+	@Benchmark
+	public long generate() {
+		Report r = createReport();
+		r.generate(sinkFactory);
+		return sinkFactory.bytes;
+	}
+
+	private static class CountingSinkFactory implements ReportSinkFactory {
+		private long bytes;
+
+		@Override
+		public ReportSink open(String outputIp, int outputPort, String indexName) {
+			return new ReportSink() {
+				private long eventCount;
+
+				@Override
+				public void send(String json) {
+					bytes += json.getBytes(StandardCharsets.UTF_8).length;
+					eventCount++;
+				}
+
+				@Override
+				public long getEventCount() {
+					return eventCount;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+
+		/**
+		 * Counts the events and their bytes on the executors, as a sink that
+		 * sends each partition would encode them.
+		 */
+		@Override
+		public long saveJson(JavaRDD<String> events, String outputIp, int outputPort, String indexName)
+				throws IOException {
+			long[] totals = events.map(json -> new long[] { 1, json.getBytes(StandardCharsets.UTF_8).length })
+					.fold(new long[2], (a, b) -> new long[] { a[0] + b[0], a[1] + b[1] });
+			bytes += totals[1];
+			return totals[0];
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package preti.spark.stock.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.reporting.AggregatedReport.AggregatedEvent;
+import preti.spark.stock.reporting.JsonEventEncoder;
+import preti.spark.stock.reporting.StockReport.StockHistoryEvent;
+
+/**
+ * Throughput of the JSON serialization of the per-bar report events, with
+ * Jackson and with the streaming encoder. Both give the same output.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportEncodingBenchmark {
+
+	@Param({ "stock", "aggregated" })
+	public String event;
+
+	private Object[] events;
+	private int cursor;
+	private ObjectMapper mapper;
+	private JsonEventEncoder encoder;
+
+	@Setup
+	public void setup() {
+		Stock stock = SyntheticData.createStock("BENC3", 1, 42);
+		PriceSeries series = stock.getSeries();
+		events = new Object[series.size()];
+		for (int i = 0; i < events.length; i++) {
+			if ("stock".equals(event)) {
+				events[i] = new StockHistoryEvent(stock.getCode(), stock.getDateAt(i), series.getHigh(i),
+						series.getLow(i), series.getClose(i), series.getVolume(i), "stock");
+			} else {
+				// a trade opened every 10 bars
+				boolean opening = i % 10 == 0;
+				events[i] = new AggregatedEvent("aggregated", stock.getDateAt(i), series.getClose(i),
+						opening ? series.getClose(i) : Double.NaN, Double.NaN, opening ? 100 : Double.NaN,
+						opening ? series.getLow(i) : Double.NaN, stock.getCode());
+			}
+		}
+		mapper = new ObjectMapper();
+		encoder = new JsonEventEncoder();
+	}
+
+	private Object nextEvent() {
+		cursor = cursor + 1 == events.length ? 0 : cursor + 1;
+		return events[cursor];
+	}
+
+	@Benchmark
+	public String objectMapper() throws IOException {
+		return mapper.writeValueAsString(nextEvent());
+	}
+
+	@Benchmark
+	public String encoderToString() {
+		return encoder.encodeToString(nextEvent());
+	}
+
+	@Benchmark
+	public int encoderToBytes() {
+		return encoder.encode(nextEvent()).getLength();
+	}
+
+}
@@ -0,0 +1,73 @@
+package preti.spark.stock.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.spark.util.SizeEstimator;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import preti.spark.stock.InputDataEntry;
+import preti.spark.stock.StockKryoRegistrator;
+import preti.spark.stock.model.PriceSeries;
+import preti.spark.stock.model.Stock;
+import scala.Tuple2;
+
+/**
+ * Prints the memory taken by the RDDs the analysis caches, the parsed input
+ * entries and the (code, stock) pairs, over synthetic histories: deserialized,
+ * as estimated by Spark for MEMORY_ONLY, and serialized with Kryo and the
+ * application's registrator, as kept by MEMORY_ONLY_SER. Arguments: [tickers]
+ * [years], 50 tickers of 10 years by default.
+ */
+public class StorageSizeMain {
+
+	public static void main(String[] args) throws ParseException {
+		int tickers = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int years = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		List<Stock> stocks = SyntheticData.createStocks(tickers, years, 42);
+		List<InputDataEntry> entries = new ArrayList<>();
+		List<Tuple2<String, Stock>> pairs = new ArrayList<>();
+		for (Stock stock : stocks) {
+			PriceSeries series = stock.getSeries();
+			for (int i = 0; i < series.size(); i++) {
+				entries.add(InputDataEntry.parseFromLine(SyntheticData.toCotahistLine(stock.getCode(),
+						series.getDate(i), series.getClose(i), series.getHigh(i), series.getLow(i),
+						series.getClose(i), series.getVolume(i))));
+			}
+			pairs.add(new Tuple2<>(stock.getCode(), stock));
+		}
+
+		System.out.println(String.format("%s tickers of %s years", tickers, years));
+		printSizes("input entries", entries);
+		printSizes("stocks", pairs);
+	}
+
+	private static void printSizes(String name, List<?> values) {
+		long deserialized = SizeEstimator.estimate(values.toArray());
+		long serialized = serializedSize(values);
+		System.out.println(String.format("%-14s %,10d values %,14d bytes deserialized %,14d bytes serialized (%.1fx)",
+				name, values.size(), deserialized, serialized, (double) deserialized / serialized));
+	}
+
+	/**
+	 * Serializes the values one after the other, as the stream of a cached
+	 * partition.
+	 */
+	private static long serializedSize(List<?> values) {
+		Kryo kryo = new Kryo();
+		new StockKryoRegistrator().registerClasses(kryo);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (Output output = new Output(bytes)) {
+			for (Object value : values) {
+				kryo.writeClassAndObject(output, value);
+			}
+		}
+		return bytes.size();
+	}
+
+}
@@ -0,0 +1,72 @@
+package preti.spark.stock.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import preti.spark.stock.model.Stock;
+import preti.spark.stock.system.TradingStrategyImpl;
+
+/**
+ * Construction of the Donchian strategy of a stock, with its channels already
+ * cached and computed from scratch, and the evaluation of all its signals at
+ * one bar, as done by the backtest loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StrategyBenchmark {
+
+	@Param({ "1", "5", "20" })
+	public int years;
+
+	private Stock stock;
+	private TradingStrategyImpl strategy;
+	private int cursor;
+
+	@Setup
+	public void setup() {
+		stock = SyntheticData.createStock("BENC3", years, 42);
+		strategy = new TradingStrategyImpl(stock, 20, 10, 10000);
+	}
+
+	private int nextBar() {
+		cursor = cursor + 1 == stock.getHistorySize() ? 0 : cursor + 1;
+		return cursor;
+	}
+
+	@Benchmark
+	public TradingStrategyImpl constructionCached() {
+		return new TradingStrategyImpl(stock, 20, 10, 10000);
+	}
+
+	@Benchmark
+	public TradingStrategyImpl constructionUncached() {
+		// the indicator cache is keyed by stock instance
+		return new TradingStrategyImpl(new Stock(stock.getCode(), stock.getSeries()), 20, 10, 10000);
+	}
+
+	@Benchmark
+	public void signals(Blackhole blackhole) {
+		int bar = nextBar();
+		blackhole.consume(strategy.enterPosition(bar));
+		blackhole.consume(strategy.exitPosition(bar));
+		blackhole.consume(strategy.calculatePositionSize(bar));
+		blackhole.consume(strategy.calculateStopLossPoint(bar));
+	}
+
+}
@@ -0,0 +1,91 @@
+package preti.spark.stock.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import preti.spark.stock.model.Stock;
+
+/**
+ * Generates reproducible price histories, so benchmarks run without any input
+ * file.
+ */
+public class SyntheticData {
+	public static final int TRADING_DAYS_PER_YEAR = 252;
+
+	// 2000-01-03, a Monday
+	private static final int FIRST_DAY = 10959;
+
+	public static Stock createStock(String code, int years, long seed) {
+		Random random = new Random(seed);
+		Stock stock = new Stock(code);
+
+		int bars = years * TRADING_DAYS_PER_YEAR;
+		int day = FIRST_DAY;
+		double close = 10 + random.nextInt(40);
+		for (int i = 0; i < bars; i++) {
+			close = Math.max(0.01, close * (1 + random.nextGaussian() * 0.02));
+			double high = close * (1 + random.nextDouble() * 0.02);
+			double low = close * (1 - random.nextDouble() * 0.02);
+			double volume = 5 * Math.pow(10, 5) + random.nextInt(5 * 1000 * 1000);
+			stock.addHistory(day, round(high), round(low), round(close), round(volume));
+			day = nextWeekDay(day);
+		}
+		return stock;
+	}
+
+	/**
+	 * Creates the histories of the given number of tickers over the same
+	 * trading days, each one with its own random walk.
+	 */
+	public static List<Stock> createStocks(int tickers, int years, long seed) {
+		List<Stock> stocks = new ArrayList<>(tickers);
+		for (int i = 0; i < tickers; i++) {
+			stocks.add(createStock(String.format("BE%02d3", i), years, seed + i));
+		}
+		return stocks;
+	}
+
+	/**
+	 * Formats a bar as a COTAHIST quote record.
+	 */
+	public static String toCotahistLine(String code, int epochDay, double open, double high, double low,
+			double close, double volume) {
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		StringBuilder line = new StringBuilder(245);
+		line.append("01").append(String.format("%04d%02d%02d", date.getYear(), date.getMonthValue(),
+				date.getDayOfMonth()));
+		line.append("02").append(pad(code, 12)).append("010").append(pad(code + " SA", 12));
+		line.append(pad("ON NM", 10)).append(pad("", 3)).append(pad("R$", 4));
+		line.append(digits(open, 13)).append(digits(high, 13)).append(digits(low, 13));
+		line.append(digits((high + low) / 2, 13)).append(digits(close, 13));
+		line.append(digits(close, 13)).append(digits(close, 13)).append(String.format("%05d", 100));
+		line.append(String.format("%018d", 1000)).append(digits(volume, 18));
+		line.append(String.format("%013d%01d%08d%07d%013d", 0, 0, 99991231, 1, 0));
+		line.append(pad("BRXXXXACNOR0", 12)).append(String.format("%03d", 0));
+		return line.toString();
+	}
+
+	private static String pad(String text, int length) {
+		return String.format("%-" + length + "s", text);
+	}
+
+	private static String digits(double value, int length) {
+		return String.format("%0" + length + "d", Math.round(value * 100));
+	}
+
+	private static int nextWeekDay(int epochDay) {
+		// 1970-01-01 was a Thursday, so (day + 3) % 7 counts from Monday
+		int next = epochDay + 1;
+		while (Math.floorMod(next + 3, 7) >= 5) {
+			next++;
+		}
+		return next;
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+
+}
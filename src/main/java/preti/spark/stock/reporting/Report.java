@@ -1,5 +0,0 @@
-package preti.spark.stock.reporting;
-
-public interface Report {
-	void generate();
-}